@@ -0,0 +1,57 @@
+package julia;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks, as org.openjdk.jmh.Main would with the same
+ *   arguments, but always with the GC profiler, and with the results also
+ *   written as JSON to jmh-result.json unless -rf or -rff say otherwise, so
+ *   a run can be kept as the baseline for the next.  The forked JVMs get
+ *   the Vector API, so the renderer uses the same engine as the program.
+ *   <p>
+ *   Usage: java -jar bench/target/benchmarks.jar [JMH options] [benchmark regexps]
+ * @author Ross Larson
+ *
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws RunnerException, IOException {
+		CommandLineOptions cmd;
+		try {
+			cmd = new CommandLineOptions(args);
+		} catch (CommandLineOptionException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd)
+				.addProfiler(GCProfiler.class)
+				.jvmArgsAppend("--add-modules", "jdk.incubator.vector", "-Djava.awt.headless=true");
+		if (!cmd.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmd.getResult().hasValue()) {
+			options.result("jmh-result.json");
+		}
+		Runner runner = new Runner(options.build());
+		if (cmd.shouldList()) {
+			runner.list();
+		}
+		else {
+			runner.run();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package julia;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The arithmetic of the reference loop, one operation at a time.  Each
+ *   allocates a Complex, so the GC profiler's rate is the thing to watch.
+ * @author Ross Larson
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexBench {
+
+	// not final, so the JIT cannot fold the operations away
+	private Complex a = new Complex(-.7795, .134), b = new Complex(.3, -1.2);
+
+	@Benchmark
+	public Complex times() {
+		return a.times(b);
+	}
+
+	@Benchmark
+	public Complex plus() {
+		return a.plus(b);
+	}
+
+	@Benchmark
+	public double abs() {
+		return a.abs();
+	}
+
+	/**
+	 * One step of the Julia loop: z*z + c.
+	 */
+	@Benchmark
+	public Complex square() {
+		return a.times(a).plus(b);
+	}
+}
@@ -0,0 +1,42 @@
+package julia;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mapping pixels to points, for every pixel of a row.
+ * @author Ross Larson
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexRasterBench {
+
+	private static final int WIDTH = 512;
+
+	private ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), WIDTH, WIDTH);
+	private int y = WIDTH / 3;
+
+	@Benchmark
+	@OperationsPerInvocation(WIDTH)
+	public void getPoint(Blackhole hole) {
+		for (int x = 0; x < WIDTH; x++) {
+			hole.consume(cr.getPoint(x, y));
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package julia;
+
+import java.util.concurrent.TimeUnit;
+
+import nip.Image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The reference escape-time loop, Julia.rigor, over one row through the
+ *   middle of the view of c = -1 + 0.1i, which crosses both the set, where
+ *   every pixel takes maxIters, and the background.  The baseline every
+ *   engine is compared with.
+ * @author Ross Larson
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RigorBench {
+
+	private static final int WIDTH = 128;
+
+	@Param({ "100", "1000", "10000" })
+	private int maxIters;
+
+	private Julia julia;
+	private Complex[] row = new Complex[WIDTH];
+
+	@Setup
+	public void setup() {
+		julia = new Julia(new Image(WIDTH, WIDTH));
+		julia.setConstant(-1, .1);
+		// finish the picture setConstant started, so it does not run during the measurement
+		julia.draw();
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), WIDTH, WIDTH);
+		for (int x = 0; x < WIDTH; x++) {
+			row[x] = cr.getPoint(x, WIDTH / 2);
+		}
+	}
+
+	/**
+	 * @return the iterations of the row, so none of it is dead code
+	 */
+	@Benchmark
+	@OperationsPerInvocation(WIDTH)
+	public int rigor() {
+		int sum = 0;
+		for (Complex c : row) {
+			sum += julia.rigor(c, maxIters);
+		}
+		return sum;
+	}
+}
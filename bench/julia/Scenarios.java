@@ -0,0 +1,379 @@
+package julia;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import nip.Image;
+
+/**
+ * Renders a catalogue of named scenes through Julia.draw(), the way the
+ *   program renders them, with every engine and number of threads, and
+ *   reports on each as JSON: pixels and iterations per second, the median
+ *   and 99th percentile time of a frame, and the memory allocated.  Where
+ *   the JMH benchmarks time the pieces, this times how the tiles, the
+ *   coloring and publishing the image work together.
+ *   <p>
+ *   Every frame of a still scene is rendered from scratch: the renderer's
+ *   kept buffer and the tile cache are cleared first.  The zoom scene zooms
+ *   in by two for every frame, reusing what the last frame shares with the
+ *   next, as zooming in the program does.  Iterations are counted as the
+ *   reference loop would do them, maxIters for every pixel of the set, so
+ *   the count does not depend on the engine and results can be compared
+ *   across engines and commits.  Allocation is the sum over all threads,
+ *   or null where the JVM cannot tell.
+ *   <p>
+ *   Usage: java --add-modules jdk.incubator.vector -cp bench/target/benchmarks.jar julia.Scenarios [options]
+ *   <pre>
+ *   --scenarios a,b  the scenes to run, all of them by default: default,
+ *                    deep-interior, spiral, high-iterations and zoom
+ *   --engines a,b    scalar, vector, float and reference, those available by default
+ *   --threads a,b    thread counts, powers of two up to the processors by default
+ *   --size n         n by n pixels, 512 by default
+ *   --frames n       frames timed per run, 20 by default
+ *   --warmup n       frames rendered before the timed ones, 10 by default, for the JIT
+ *   --label s        recorded with the results, such as the commit
+ *   --out file       where the JSON goes, standard output by default
+ *   </pre>
+ *   The reference engine is the Complex based loop on the calling thread,
+ *   so it is only run with the first thread count.
+ * @author Ross Larson
+ *
+ */
+public class Scenarios {
+
+	/**
+	 * A view to render, with its constant and iteration limit.
+	 */
+	static class Scenario {
+		final String name;
+		final double cRe, cIm, width;
+		final BigDecimal re, im;
+		final int maxIters;
+		final boolean zoom;
+
+		Scenario(String name, double cRe, double cIm, String re, String im, double width, int maxIters, boolean zoom) {
+			this.name = name;
+			this.cRe = cRe;
+			this.cIm = cIm;
+			this.re = new BigDecimal(re);
+			this.im = new BigDecimal(im);
+			this.width = width;
+			this.maxIters = maxIters;
+			this.zoom = zoom;
+		}
+	}
+
+	static final Scenario[] CATALOGUE = {
+		// the view the program opens with
+		new Scenario("default", -.7795, .134, "0", "0", 4, 100, false),
+		// inside the rabbit, where no pixel escapes and cycle checking does the work
+		new Scenario("deep-interior", -.12, .75, "0", "0", .25, 1000, false),
+		// a spiral of dust, nearly all boundary
+		new Scenario("spiral", -.8, .156, "0", "0", 3.2, 1000, false),
+		// close to the Mandelbrot set, so many pixels escape late
+		new Scenario("high-iterations", -.7269, .1889, "0", "0", 3.2, 10000, false),
+		// into a point on the rabbit's boundary, twice as deep every frame
+		new Scenario("zoom", -.12, .75, "0.35175824004590084", "0", 3.2, 500, true),
+	};
+
+	private List<Scenario> scenarios = new ArrayList<Scenario>(Arrays.asList(CATALOGUE));
+	private List<String> engines = new ArrayList<String>(Arrays.asList("scalar", "vector", "float", "reference"));
+	private List<Integer> threads = new ArrayList<Integer>();
+	private int size = 512, frames = 20, warmup = 10;
+	private String label = "", out;
+
+	/**
+	 * @param args the command line, as described above
+	 * @throws IllegalArgumentException if an option is unknown or its value cannot be read
+	 */
+	public Scenarios(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (i + 1 == args.length)
+				throw new IllegalArgumentException(arg + " needs a value");
+			String value = args[++i];
+			try {
+				if (arg.equals("--scenarios")) {
+					scenarios.clear();
+					for (String name : value.split(",")) {
+						scenarios.add(scenario(name));
+					}
+				}
+				else if (arg.equals("--engines")) {
+					engines.clear();
+					for (String name : value.split(",")) {
+						if (!Arrays.asList("scalar", "vector", "float", "reference").contains(name))
+							throw new IllegalArgumentException("Unknown engine " + name);
+						engines.add(name);
+					}
+				}
+				else if (arg.equals("--threads")) {
+					for (String n : value.split(",")) {
+						threads.add(Integer.parseInt(n));
+					}
+				}
+				else if (arg.equals("--size")) {
+					size = Integer.parseInt(value);
+				}
+				else if (arg.equals("--frames")) {
+					frames = Integer.parseInt(value);
+				}
+				else if (arg.equals("--warmup")) {
+					warmup = Integer.parseInt(value);
+				}
+				else if (arg.equals("--label")) {
+					label = value;
+				}
+				else if (arg.equals("--out")) {
+					out = value;
+				}
+				else {
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Cannot read " + value + " for " + arg);
+			}
+		}
+		if (size < 2 || frames < 1 || warmup < 0)
+			throw new IllegalArgumentException("Needs at least 2x2 pixels and one frame");
+		if (threads.isEmpty()) {
+			int processors = Runtime.getRuntime().availableProcessors();
+			for (int n = 1; n < processors; n *= 2) {
+				threads.add(n);
+			}
+			threads.add(processors);
+		}
+	}
+
+	/**
+	 * @param name the name of a scene of the catalogue
+	 * @return the scene
+	 * @throws IllegalArgumentException if there is none of that name
+	 */
+	static Scenario scenario(String name) {
+		for (Scenario s : CATALOGUE) {
+			if (s.name.equals(name))
+				return s;
+		}
+		throw new IllegalArgumentException("Unknown scenario " + name);
+	}
+
+	/**
+	 * Run every scene with every engine and thread count, and write the results.
+	 * @throws IOException if the results cannot be written
+	 */
+	public void run() throws IOException {
+		List<String> results = new ArrayList<String>();
+		for (Scenario s : scenarios) {
+			for (String engine : engines) {
+				for (int n : threads) {
+					if (engine.equals("reference") && n != threads.get(0)) {
+						// only ever runs on the calling thread
+						continue;
+					}
+					String result = run(s, engine, n);
+					if (result != null) {
+						results.add(result);
+					}
+				}
+			}
+		}
+		PrintWriter w = out == null ? new PrintWriter(System.out) : new PrintWriter(new OutputStreamWriter(
+				new FileOutputStream(out), "UTF-8"));
+		w.println("{");
+		w.println("  \"label\": " + quote(label) + ",");
+		w.println("  \"java\": " + quote(System.getProperty("java.version")) + ",");
+		w.println("  \"vm\": " + quote(System.getProperty("java.vm.name")) + ",");
+		w.println("  \"os\": " + quote(System.getProperty("os.name") + " " + System.getProperty("os.arch")) + ",");
+		w.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+		w.println("  \"size\": " + size + ",");
+		w.println("  \"frames\": " + frames + ",");
+		w.println("  \"warmup\": " + warmup + ",");
+		w.println("  \"results\": [");
+		for (int i = 0; i < results.size(); i++) {
+			w.println("    " + results.get(i) + (i + 1 < results.size() ? "," : ""));
+		}
+		w.println("  ]");
+		w.println("}");
+		w.flush();
+		if (out != null) {
+			w.close();
+		}
+	}
+
+	/**
+	 * Warm up and time one scene with one engine on some threads.
+	 * @return the result as a JSON object, or null if the engine is not available
+	 */
+	private String run(Scenario s, String engine, int n) {
+		// Julia turns on the symmetry shortcut for the formula
+		TileRenderer renderer = new TileRenderer(n);
+		String name = engine;
+		if (engine.equals("vector") || engine.equals("float")) {
+			Engine vector = Engines.vector(), floats = Engines.floats();
+			if (vector == null || engine.equals("float") && floats == null) {
+				renderer.getPool().shutdown();
+				return null;
+			}
+			renderer.setEngine(vector);
+			name = vector.getName();
+			if (engine.equals("float")) {
+				renderer.setFloatEngine(floats);
+				name = floats.getName();
+			}
+		}
+		else if (engine.equals("scalar")) {
+			renderer.setEngine(Engines.scalar());
+		}
+		System.err.printf("%s, %s, %d threads%n", s.name, name, n);
+		try {
+			// the same renderer, so the pool's threads are all started before the timing
+			frames(julia(s, renderer, engine), s, renderer, warmup, null);
+			long[] nanos = new long[frames];
+			Julia julia = julia(s, renderer, engine);
+			long allocated = allocated();
+			long iterations = frames(julia, s, renderer, frames, nanos);
+			long bytes = allocated < 0 ? -1 : allocated() - allocated;
+			long total = 0;
+			for (long t : nanos) {
+				total += t;
+			}
+			Arrays.sort(nanos);
+			double seconds = total / 1e9;
+			return String.format(Locale.ROOT, "{\"scenario\": %s, \"engine\": %s, \"threads\": %d, \"maxIters\": %d, "
+					+ "\"frames\": %d, \"mpixelsPerSecond\": %.3f, \"iterationsPerSecond\": %.4g, \"p50Ms\": %.3f, "
+					+ "\"p99Ms\": %.3f, \"allocatedMBPerSecond\": %s, \"allocatedBytesPerFrame\": %s}", quote(s.name),
+					quote(name), n, s.maxIters, frames, (double) size * size * frames / 1e6 / seconds,
+					iterations / seconds, percentile(nanos, .5) / 1e6, percentile(nanos, .99) / 1e6,
+					bytes < 0 ? "null" : String.format(Locale.ROOT, "%.1f", bytes / 1e6 / seconds),
+					bytes < 0 ? "null" : Long.toString(bytes / frames));
+		} finally {
+			renderer.getPool().shutdown();
+		}
+	}
+
+	/**
+	 * @return a Julia showing the scene's first view, already drawn once
+	 */
+	private Julia julia(Scenario s, TileRenderer renderer, String engine) {
+		Julia julia = new Julia(new Image(size, size));
+		julia.setProgressive(false);
+		julia.setRenderer(renderer);
+		julia.setReferenceMode(engine.equals("reference"));
+		julia.setConstant(s.cRe, s.cIm);
+		julia.setMaxIterations(s.maxIters);
+		julia.center(s.re, s.im, s.width / (size - 1));
+		// cancels the redraws the setters started in the background
+		julia.draw();
+		return julia;
+	}
+
+	/**
+	 * Draw count frames of a scene.
+	 * @param nanos receives the time of each frame, may be null
+	 * @return the iterations the reference loop would have done for them
+	 */
+	private long frames(Julia julia, Scenario s, TileRenderer renderer, int count, long[] nanos) {
+		long iterations = 0;
+		for (int f = 0; f < count; f++) {
+			long start;
+			if (s.zoom) {
+				start = System.nanoTime();
+				// the redraw zoomIn starts holds the lock until draw() cancels it, so its work is timed too
+				julia.zoomIn();
+			}
+			else {
+				renderer.forget();
+				julia.getCache().clear();
+				start = System.nanoTime();
+			}
+			julia.draw();
+			if (nanos != null) {
+				nanos[f] = System.nanoTime() - start;
+			}
+			for (int c : julia.getCounts()) {
+				iterations += Math.min(c, s.maxIters);
+			}
+		}
+		return iterations;
+	}
+
+	/**
+	 * @return the bytes every live thread has allocated so far, or -1 if the JVM cannot tell
+	 */
+	private static long allocated() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+		if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long sum = 0;
+		for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			// -1 for threads that ended in the meantime
+			sum += Math.max(0, bytes);
+		}
+		return sum;
+	}
+
+	/**
+	 * @param sorted frame times, shortest first
+	 * @param p the fraction of frames at least as fast, 0 to 1
+	 * @return the nearest-rank percentile
+	 */
+	static long percentile(long[] sorted, double p) {
+		int rank = (int) Math.ceil(p * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static String quote(String s) {
+		StringBuilder b = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				b.append('\\').append(c);
+			}
+			else if (c < ' ') {
+				b.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				b.append(c);
+			}
+		}
+		return b.append('"').toString();
+	}
+
+	public static void main(String[] args) {
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+		Scenarios scenarios;
+		try {
+			scenarios = new Scenarios(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java julia.Scenarios [--scenarios a,b] [--engines a,b] [--threads a,b]"
+					+ " [--size n] [--frames n] [--warmup n] [--label s] [--out file]");
+			System.exit(2);
+			return;
+		}
+		try {
+			scenarios.run();
+		} catch (IOException e) {
+			System.err.println("Cannot write the results: " + e.getMessage());
+			System.exit(1);
+		}
+		// the render services keep threads alive
+		System.exit(0);
+	}
+}
@@ -0,0 +1,68 @@
+package nip;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Painting an Image, rotated and zoomed or not, onto an offscreen
+ *   picture the size of the image, as Swing would paint it on screen.
+ * @author Ross Larson
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageBench {
+
+	private static final int SIZE = 512;
+
+	@Param({ "0", "30" })
+	private double rotation;
+
+	@Param({ "100", "150" })
+	private double zoom;
+
+	private Image image;
+	private Graphics2D g;
+
+	@Setup
+	public void setup() {
+		image = new Image(SIZE, SIZE);
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				image.setPixel(x, y, 0xff000000 | x << 16 | y << 8 | (x ^ y) & 0xff);
+			}
+		}
+		image.setRotation(rotation);
+		image.setZoom(zoom);
+		g = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB).createGraphics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	@Benchmark
+	public Graphics2D paint() {
+		image.paint(g);
+		return g;
+	}
+}
@@ -0,0 +1,76 @@
+package nip;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing pixels into a raster, the ways Julia publishes a frame: pixel by
+ *   pixel, region by region, and raster to raster.
+ * @author Ross Larson
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageRasterBench {
+
+	@Param({ "256", "1024" })
+	private int size;
+
+	private ImageRaster raster, destination;
+	private int color;
+
+	@Setup
+	public void setup() {
+		raster = new ImageRaster(size, size);
+		destination = new ImageRaster(size, size);
+	}
+
+	/**
+	 * Every pixel of the raster, one call each.
+	 */
+	@Benchmark
+	public ImageRaster setPixel() {
+		color += 0x010203;
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				raster.setPixel(x, y, color);
+			}
+		}
+		return raster;
+	}
+
+	/**
+	 * The raster in 8 by 8 blocks, as Mariani-Silver fills them.
+	 */
+	@Benchmark
+	public ImageRaster fillRegion() {
+		color += 0x010203;
+		for (int y = 0; y < size; y += 8) {
+			for (int x = 0; x < size; x += 8) {
+				raster.fillRegion(x, y, 8, 8, color);
+			}
+		}
+		return raster;
+	}
+
+	@Benchmark
+	public ImageRaster copy() {
+		raster.copy(destination);
+		return destination;
+	}
+}
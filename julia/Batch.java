@@ -0,0 +1,412 @@
+package julia;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+import nip.Image;
+
+/**
+ * Renders one picture to a file without opening a window, for batch jobs
+ *   on servers and for timing the renderer the same way every time.  The
+ *   picture goes through Julia.draw() on the parallel renderer, just as in
+ *   the program, and the time that takes is reported with the file.
+ *   <p>
+ *   Usage: java -Djava.awt.headless=true julia.Batch [options] file.png
+ *   <pre>
+ *   --formula name   julia (the default), mandelbrot, multibrotN, juliaN,
+ *                    burning-ship, burning-ship-julia, tricorn or tricorn-julia
+ *   --c re,im        the constant of the Julia formulas, -0.7795,0.134 by default
+ *   --center re,im   center of the view, 0,0 by default; any number of digits
+ *   --width w        width of the view in the complex plane, 4 by default
+ *   --size WxH       size of the picture in pixels, 512x512 by default
+ *   --iterations n   iteration limit, 100 by default
+ *   --palette p      hue (the default), or colors to blend such as 000000,ff8000,ffffff
+ *   --antialias n    n by n samples for the pixels on edges
+ *   --threads n      threads to render on, all processors by default
+ *   --float          iterate shallow views in float
+ *   --repeat n       render n times from scratch and report each, to see the JIT warm up
+ *   --stream         render in strips straight to the PNG, for pictures too big for memory
+ *   --frames n       render n frames of a zoom from the view to the one of --to, into the
+ *                    directory given as the output, or into one Motion JPEG file ending in .mjpeg
+ *   --to re,im,w     center and width of the last frame of a zoom
+ *   --easing e       pace of a zoom, smooth (the default) or linear
+ *   --sweep re,im:.. with --frames, keep the view and move c from --c through these points
+ *                    instead of zooming, reporting the time of every frame
+ *   --adaptive n     seed each frame's iteration limit of a sweep from the frame before,
+ *                    between --iterations and n
+ *   </pre>
+ *   Pictures too big for half the heap are always streamed.  Streaming goes
+ *   through StripRenderer instead of Julia, so it is limited to views
+ *   doubles can draw and does no anti-aliasing; so do zooms, which go
+ *   through ZoomAnimation, and sweeps, which go through ConstantSweep.
+ * @author Ross Larson
+ *
+ */
+public class Batch {
+
+	/**
+	 * Bytes a picture drawn in memory takes per pixel: the IterationBuffer's
+	 *   count, cycle length, orbit and fill flag (4 + 4 + 8 + 8 + 1), the
+	 *   colors (4) and the image (4)
+	 */
+	public static final int BYTES_PER_PIXEL = 33;
+
+	private String formula = "julia", output;
+	private double cRe = -.7795, cIm = .134, width = 4, toWidth;
+	private BigDecimal re = BigDecimal.ZERO, im = BigDecimal.ZERO, toRe, toIm;
+	private double[] sweepRe, sweepIm;
+	private int pixelsWide = 512, pixelsHigh = 512, maxIters = 100, antialias, threads, repeat = 1, frames = 1, adaptive;
+	private ZoomAnimation.Easing easing = ZoomAnimation.SMOOTH;
+	private Palette palette = new HuePalette();
+	private boolean floats, stream;
+	private Image image;
+
+	/**
+	 * @param args the command line, as described above
+	 * @throws IllegalArgumentException if an option is unknown or its value cannot be read
+	 */
+	public Batch(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--")) {
+				if (output != null)
+					throw new IllegalArgumentException("Only one output file, not " + output + " and " + arg);
+				output = arg;
+				continue;
+			}
+			if (arg.equals("--float")) {
+				floats = true;
+				continue;
+			}
+			if (arg.equals("--stream")) {
+				stream = true;
+				continue;
+			}
+			if (i + 1 == args.length)
+				throw new IllegalArgumentException(arg + " needs a value");
+			String value = args[++i];
+			try {
+				if (arg.equals("--formula")) {
+					formula(value);
+					formula = value;
+				}
+				else if (arg.equals("--c")) {
+					String[] c = pair(value, ",");
+					cRe = Double.parseDouble(c[0]);
+					cIm = Double.parseDouble(c[1]);
+				}
+				else if (arg.equals("--center")) {
+					String[] c = pair(value, ",");
+					re = new BigDecimal(c[0]);
+					im = new BigDecimal(c[1]);
+				}
+				else if (arg.equals("--width")) {
+					width = Double.parseDouble(value);
+				}
+				else if (arg.equals("--size")) {
+					String[] size = pair(value, "x");
+					pixelsWide = Integer.parseInt(size[0]);
+					pixelsHigh = Integer.parseInt(size[1]);
+				}
+				else if (arg.equals("--iterations")) {
+					maxIters = Integer.parseInt(value);
+				}
+				else if (arg.equals("--palette")) {
+					palette = palette(value);
+				}
+				else if (arg.equals("--antialias")) {
+					antialias = Integer.parseInt(value);
+				}
+				else if (arg.equals("--threads")) {
+					threads = Integer.parseInt(value);
+				}
+				else if (arg.equals("--repeat")) {
+					repeat = Integer.parseInt(value);
+				}
+				else if (arg.equals("--frames")) {
+					frames = Integer.parseInt(value);
+				}
+				else if (arg.equals("--to")) {
+					String[] to = value.split(",");
+					if (to.length != 3)
+						throw new IllegalArgumentException("Expected re,im,width, not " + value);
+					toRe = new BigDecimal(to[0]);
+					toIm = new BigDecimal(to[1]);
+					toWidth = Double.parseDouble(to[2]);
+				}
+				else if (arg.equals("--easing")) {
+					if (value.equals("linear"))
+						easing = ZoomAnimation.LINEAR;
+					else if (value.equals("smooth"))
+						easing = ZoomAnimation.SMOOTH;
+					else
+						throw new IllegalArgumentException("Unknown easing " + value);
+				}
+				else if (arg.equals("--sweep")) {
+					String[] points = value.split(":");
+					sweepRe = new double[points.length + 1];
+					sweepIm = new double[points.length + 1];
+					for (int p = 0; p < points.length; p++) {
+						String[] c = pair(points[p], ",");
+						sweepRe[p + 1] = Double.parseDouble(c[0]);
+						sweepIm[p + 1] = Double.parseDouble(c[1]);
+					}
+				}
+				else if (arg.equals("--adaptive")) {
+					adaptive = Integer.parseInt(value);
+				}
+				else {
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Cannot read " + value + " for " + arg);
+			}
+		}
+		if (output == null)
+			throw new IllegalArgumentException("No output file");
+		if (pixelsWide < 2 || pixelsHigh < 2 || !(width > 0) || maxIters < 1)
+			throw new IllegalArgumentException("The picture needs at least 2x2 pixels, a width and an iteration limit");
+		if (frames > 1 && !(toWidth > 0) && sweepRe == null)
+			throw new IllegalArgumentException(frames + " frames need --to re,im,width or --sweep re,im");
+		if (toWidth > 0 && sweepRe != null)
+			throw new IllegalArgumentException("Either zoom with --to or sweep with --sweep, not both");
+		if (sweepRe != null) {
+			// the path starts at the constant
+			sweepRe[0] = cRe;
+			sweepIm[0] = cIm;
+		}
+		stream |= !fits((long) pixelsWide * pixelsHigh, Runtime.getRuntime().maxMemory());
+	}
+
+	/**
+	 * @param pixels size of the picture
+	 * @param heap the most memory the JVM will use
+	 * @return whether the picture can be drawn in memory, taking at most half the heap
+	 */
+	static boolean fits(long pixels, long heap) {
+		return pixels <= heap / 2 / BYTES_PER_PIXEL;
+	}
+
+	private static String[] pair(String value, String separator) {
+		String[] parts = value.split(separator);
+		if (parts.length != 2)
+			throw new IllegalArgumentException("Expected two values separated by " + separator + ", not " + value);
+		return parts;
+	}
+
+	/**
+	 * @param name a formula's name, as getName() gives it, with dashes for spaces
+	 * @return the formula
+	 * @throws IllegalArgumentException if no formula has that name
+	 */
+	static FractalFormula formula(String name) {
+		String n = name.replace('-', ' ');
+		FractalFormula[] named = { new JuliaFormula(), new MandelbrotFormula(), new BurningShipFormula(false),
+				new BurningShipFormula(true), new TricornFormula(false), new TricornFormula(true) };
+		for (FractalFormula f : named) {
+			if (f.getName().equals(n))
+				return f;
+		}
+		for (String prefix : new String[] { "multibrot", "julia" }) {
+			if (n.startsWith(prefix)) {
+				try {
+					return new MultibrotFormula(Integer.parseInt(n.substring(prefix.length())), prefix.equals("julia"));
+				} catch (NumberFormatException e) {
+					// not a power, so not a formula either
+				}
+			}
+		}
+		throw new IllegalArgumentException("Unknown formula " + name);
+	}
+
+	/**
+	 * @param value hue, or colors as six hex digits separated by commas
+	 */
+	static Palette palette(String value) {
+		if (value.equals("hue"))
+			return new HuePalette();
+		String[] hex = value.split(",");
+		Color[] stops = new Color[hex.length];
+		for (int i = 0; i < hex.length; i++) {
+			stops[i] = new Color(Integer.parseInt(hex[i], 16));
+		}
+		return new GradientPalette(256, stops);
+	}
+
+	/**
+	 * Render the picture from scratch, with a new Julia, and write it to the output file.
+	 * @return the time the rendering took in nanoseconds, not counting writing the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public long run() throws IOException {
+		if (frames > 1 && sweepRe != null) {
+			return runSweep();
+		}
+		if (frames > 1) {
+			return runAnimation();
+		}
+		if (stream) {
+			return runStreamed();
+		}
+		image = new Image(pixelsWide, pixelsHigh);
+		Julia julia = new Julia(image);
+		if (threads > 0) {
+			julia.setRenderer(new TileRenderer(threads));
+		}
+		julia.setProgressive(false);
+		julia.setFormula(formula(formula), cRe, cIm);
+		julia.setPalette(palette);
+		julia.setFloatPrecision(floats);
+		julia.setAntialias(antialias);
+		julia.setMaxIterations(maxIters);
+		julia.center(re, im, width / (pixelsWide - 1));
+		// the setters above started redraws in the background; time the draw alone
+		julia.forget();
+		long start = System.nanoTime();
+		julia.draw();
+		long time = System.nanoTime() - start;
+		image.saveImage(output);
+		return time;
+	}
+
+	/**
+	 * Render the picture in strips straight into the output file.
+	 * @return the time the rendering and writing took in nanoseconds
+	 */
+	private long runStreamed() throws IOException {
+		image = null;
+		TileRenderer renderer = renderer();
+		ComplexRaster view = view(re, im, width);
+		long start = System.nanoTime();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16);
+		try {
+			new StripRenderer(renderer, colors(renderer), 4).render(view, cRe, cIm, maxIters, out);
+		} finally {
+			out.close();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Render the frames of a zoom into the output directory or Motion JPEG file.
+	 * @return the time the rendering and writing took in nanoseconds
+	 */
+	private long runAnimation() throws IOException {
+		image = null;
+		TileRenderer renderer = renderer();
+		ZoomAnimation.FrameWriter writer = frameWriter();
+		long start = System.nanoTime();
+		new ZoomAnimation(renderer, colors(renderer)).render(view(re, im, width), view(toRe, toIm, toWidth), frames,
+				easing, cRe, cIm, maxIters, writer);
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Render the frames of a sweep of the constant into the output directory
+	 *   or Motion JPEG file, printing the time of each frame as it is computed.
+	 * @return the time the rendering and writing took in nanoseconds
+	 */
+	private long runSweep() throws IOException {
+		image = null;
+		TileRenderer renderer = renderer();
+		ConstantSweep sweep = new ConstantSweep(renderer, colors(renderer));
+		if (adaptive > 0) {
+			sweep.setAdaptiveLimit(maxIters, Math.max(maxIters, adaptive));
+		}
+		sweep.setFrameListener(new ConstantSweep.FrameListener() {
+			public void frameDone(int frame, double cRe, double cIm, int maxIters, long nanos) {
+				System.out.printf("frame %d: c %.6f,%.6f, %d iterations, %.1f ms%n", frame, cRe, cIm, maxIters,
+						nanos / 1e6);
+			}
+		});
+		ZoomAnimation.FrameWriter writer = frameWriter();
+		long start = System.nanoTime();
+		sweep.render(view(re, im, width), sweepRe, sweepIm, frames, maxIters, writer);
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @return a writer of frames into the output directory or Motion JPEG file
+	 */
+	private ZoomAnimation.FrameWriter frameWriter() throws IOException {
+		if (output.endsWith(".mjpeg") || output.endsWith(".mjpg")) {
+			return ZoomAnimation.mjpeg(new BufferedOutputStream(new FileOutputStream(output), 1 << 16));
+		}
+		File dir = new File(output);
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot make directory " + output);
+		return ZoomAnimation.pngSequence(dir, "frame");
+	}
+
+	/**
+	 * @return a tile renderer set up from the options
+	 */
+	private TileRenderer renderer() {
+		TileRenderer renderer = threads > 0 ? new TileRenderer(threads) : new TileRenderer();
+		renderer.setFormula(formula(formula));
+		renderer.setSymmetry(renderer.getFormula().isPointSymmetric());
+		if (floats) {
+			renderer.setFloatEngine(Engines.floats());
+		}
+		return renderer;
+	}
+
+	private ColorPass colors(TileRenderer renderer) {
+		ColorPass colors = new ColorPass(renderer.getPool());
+		colors.setPalette(palette);
+		return colors;
+	}
+
+	/**
+	 * @return the view of the picture's size with the given center and width, in doubles
+	 */
+	private ComplexRaster view(BigDecimal re, BigDecimal im, double width) {
+		double scale = width / (pixelsWide - 1);
+		double left = re.doubleValue() - scale*(pixelsWide - 1)/2, top = im.doubleValue() + scale*(pixelsHigh - 1)/2;
+		return new ComplexRaster(new Complex(left, top),
+				new Complex(left + scale*(pixelsWide - 1), top - scale*(pixelsHigh - 1)), pixelsHigh, pixelsWide);
+	}
+
+	/**
+	 * @return the picture of the last run, or null if it was streamed
+	 */
+	public Image getImage() {
+		return image;
+	}
+
+	public static void main(String[] args) {
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+		Batch batch;
+		try {
+			batch = new Batch(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java julia.Batch [--formula name] [--c re,im] [--center re,im] [--width w]"
+					+ " [--size WxH] [--iterations n] [--palette p] [--antialias n] [--threads n] [--float] [--repeat n] [--stream]"
+					+ " [--frames n --to re,im,w [--easing e]] [--frames n --sweep re,im:... [--adaptive n]] file.png");
+			System.exit(2);
+			return;
+		}
+		try {
+			for (int n = 0; n < Math.max(1, batch.repeat); n++) {
+				long time = batch.run();
+				double ms = time / 1e6;
+				double mpx = (double) batch.pixelsWide * batch.pixelsHigh * batch.frames / (time / 1e3);
+				System.out.printf("%s: %dx%d, %d frames, %d iterations, %.1f ms, %.2f Mpixels/s%n", batch.output,
+						batch.pixelsWide, batch.pixelsHigh, batch.frames, batch.maxIters, ms, mpx);
+			}
+		} catch (IOException e) {
+			System.err.println("Cannot write " + batch.output + ": " + e.getMessage());
+			System.exit(1);
+		}
+		// the renderer's pool and the render service keep threads alive
+		System.exit(0);
+	}
+}
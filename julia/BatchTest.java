@@ -0,0 +1,68 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class BatchTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writesThePicture() throws IOException {
+		File file = new File(folder.getRoot(), "julia.png");
+		Batch batch = new Batch(new String[] { "--size", "80x60", "--iterations", "200", "--threads", "2",
+				"--palette", "000000,ffffff", file.getPath() });
+		assertTrue(batch.run() > 0);
+		BufferedImage png = ImageIO.read(file);
+		assertEquals(80, png.getWidth());
+		assertEquals(60, png.getHeight());
+		int different = 0;
+		for (int y = 0; y < 60; ++y) {
+			for (int x = 0; x < 80; ++x) {
+				assertEquals(batch.getImage().getPixel(x, y), png.getRGB(x, y));
+				if (png.getRGB(x, y) != png.getRGB(0, 0)) {
+					different++;
+				}
+			}
+		}
+		assertTrue(different > 100);
+	}
+
+	@Test
+	public void formulasByName() {
+		assertEquals("julia", Batch.formula("julia").getName());
+		assertEquals("burning ship julia", Batch.formula("burning-ship-julia").getName());
+		assertEquals("multibrot3", Batch.formula("multibrot3").getName());
+		assertEquals("julia4", Batch.formula("julia4").getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownFormula() {
+		new Batch(new String[] { "--formula", "juliaset", "out.png" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noOutput() {
+		new Batch(new String[] { "--iterations", "500" });
+	}
+
+	@Test
+	public void bigPicturesAreStreamed() {
+		// 33 bytes a pixel: 512x512 is 8.25 MB, so it takes a 16.5 MB heap
+		assertTrue(Batch.fits(512*512, 512*512*66L));
+		assertFalse(Batch.fits(512*512, 512*512*66L - 2));
+		// a gigabyte heap streams long before 2^28 pixels
+		assertFalse(Batch.fits(1L << 25, 1L << 30));
+	}
+}
@@ -0,0 +1,191 @@
+package julia;
+
+import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Turns iteration counts into colors.  This is a pass of its own over an
+ *   iteration buffer, so changing how things are colored, or the limit they
+ *   are colored for, never runs the fractal math again.
+ * @author Ross Larson
+ *
+ */
+public class ColorPass {
+
+	/**
+	 * Rows per task when coloring in parallel
+	 */
+	private static final int ROWS = 16;
+
+	/**
+	 * Color of pixels that have not escaped
+	 */
+	public static final int INTERIOR = Color.black.getRGB();
+
+	private ForkJoinPool pool;
+	private Palette palette, interior;
+	private int offset;
+
+	/**
+	 * Colors with the hue palette Julia has always used.
+	 * @param pool pool to color rows on in parallel, or null to color on the calling thread
+	 */
+	public ColorPass(ForkJoinPool pool) {
+		this.pool = pool;
+		this.palette = new HuePalette();
+	}
+
+	/**
+	 * @param palette colors for the escaped pixels
+	 */
+	public void setPalette(Palette palette) {
+		this.palette = palette;
+	}
+
+	public Palette getPalette() {
+		return palette;
+	}
+
+	/**
+	 * Color pixels caught in a cycle by the length of the cycle, using entry
+	 *   period % size of this palette.  Other pixels that have not escaped stay INTERIOR.
+	 * @param interior palette for cycle lengths, or null to draw every non-escaped pixel INTERIOR
+	 */
+	public void setInteriorPalette(Palette interior) {
+		this.interior = interior;
+	}
+
+	public Palette getInteriorPalette() {
+		return interior;
+	}
+
+	/**
+	 * Shift every escaped color along the palette, for color cycling.
+	 * @param offset number of iterations to add before picking a color
+	 */
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * The color of one pixel.
+	 * @param iters its iteration count
+	 * @param limit the iteration limit being drawn; counts at or above it have not escaped
+	 * @return packed ARGB color
+	 */
+	public int color(int iters, int limit) {
+		if (iters >= limit) {
+			return INTERIOR;
+		}
+		int[] lut = palette.getTable();
+		return lut[(iters + Math.floorMod(offset, lut.length)) % lut.length];
+	}
+
+	/**
+	 * The color of one pixel, coloring a cycle by its length when there is
+	 *   an interior palette.
+	 * @param iters its iteration count
+	 * @param period its cycle length as kept by IterationBuffer
+	 * @param limit the iteration limit being drawn
+	 * @return packed ARGB color
+	 */
+	public int color(int iters, int period, int limit) {
+		if (iters >= limit && interior != null && period > 0) {
+			int[] inside = interior.getTable();
+			return inside[period % inside.length];
+		}
+		return color(iters, limit);
+	}
+
+	/**
+	 * Color a whole frame.  With a step above 1 only the samples on a
+	 *   step by step grid are read, and each one colors the whole block
+	 *   below and to its right.
+	 * @param iters counts, one row after another
+	 * @param width of the frame in pixels
+	 * @param height of the frame in pixels
+	 * @param limit the iteration limit being drawn
+	 * @param step spacing of the samples to use
+	 * @param argb receives the colors, one row after another
+	 */
+	public void apply(int[] iters, int width, int height, int limit, int step, int[] argb) {
+		apply(iters, null, width, height, limit, step, argb);
+	}
+
+	/**
+	 * Same as apply(iters, width, height, limit, step, argb), also coloring
+	 *   cycles by their length when there is an interior palette.
+	 * @param periods cycle lengths as kept by IterationBuffer, may be null
+	 */
+	public void apply(int[] iters, int[] periods, int width, int height, int limit, int step, int[] argb) {
+		int[] lut = palette.getTable();
+		int[] inside = interior == null || periods == null ? null : interior.getTable();
+		if (pool == null) {
+			colorRows(iters, periods, width, 0, height, limit, step, lut, inside, argb);
+		}
+		else {
+			pool.invoke(new RowTask(iters, periods, width, 0, height, limit, step, lut, inside, argb));
+		}
+	}
+
+	/**
+	 * Color rows [from, to) of a frame with the table lut, and cycles with
+	 *   the table inside when it is not null.
+	 */
+	private void colorRows(int[] iters, int[] periods, int width, int from, int to, int limit, int step,
+			int[] lut, int[] inside, int[] argb) {
+		int n = lut.length;
+		int shift = Math.floorMod(offset, n);
+		for (int y = from; y < to; y++) {
+			int sampleRow = (y - y % step) * width;
+			for (int x = 0; x < width; x++) {
+				int i = sampleRow + x - x % step;
+				int it = iters[i];
+				if (it < limit) {
+					argb[y*width + x] = lut[(it + shift) % n];
+				}
+				else if (inside != null && periods[i] > 0) {
+					argb[y*width + x] = inside[periods[i] % inside.length];
+				}
+				else {
+					argb[y*width + x] = INTERIOR;
+				}
+			}
+		}
+	}
+
+	private class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int[] iters, periods, lut, inside, argb;
+		private int width, from, to, limit, step;
+
+		RowTask(int[] iters, int[] periods, int width, int from, int to, int limit, int step, int[] lut, int[] inside,
+				int[] argb) {
+			this.iters = iters;
+			this.periods = periods;
+			this.inside = inside;
+			this.width = width;
+			this.from = from;
+			this.to = to;
+			this.limit = limit;
+			this.step = step;
+			this.lut = lut;
+			this.argb = argb;
+		}
+
+		protected void compute() {
+			if (to - from <= ROWS) {
+				colorRows(iters, periods, width, from, to, limit, step, lut, inside, argb);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RowTask(iters, periods, width, from, mid, limit, step, lut, inside, argb),
+					new RowTask(iters, periods, width, mid, to, limit, step, lut, inside, argb));
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+
+public class ColorPassTest {
+	
+	final private int width = 40, height = 37;
+	
+	private int[] counts() {
+		int[] iters = new int[width*height];
+		for (int i = 0; i < iters.length; ++i) {
+			iters[i] = (i * 7) % 300;
+		}
+		return iters;
+	}
+	
+	@Test
+	public void parallelSameAsSerial() {
+		int[] serial = new int[width*height];
+		int[] parallel = new int[width*height];
+		new ColorPass(null).apply(counts(), width, height, 250, 1, serial);
+		new ColorPass(new ForkJoinPool(3)).apply(counts(), width, height, 250, 1, parallel);
+		assertArrayEquals(serial, parallel);
+	}
+	
+	@Test
+	public void interiorAndLimit() {
+		ColorPass colors = new ColorPass(null);
+		assertEquals(ColorPass.INTERIOR, colors.color(100, 100));
+		assertEquals(ColorPass.INTERIOR, colors.color(150, 100));
+		assertFalse(ColorPass.INTERIOR == colors.color(99, 100));
+	}
+	
+	@Test
+	public void blocks() {
+		int[] iters = counts();
+		int[] argb = new int[width*height];
+		ColorPass colors = new ColorPass(null);
+		colors.apply(iters, width, height, 250, 4, argb);
+		for (int y = 0; y < height; ++y) {
+			for (int x = 0; x < width; ++x) {
+				int sample = iters[(y - y%4)*width + x - x%4];
+				assertEquals(colors.color(sample, 250), argb[y*width + x]);
+			}
+		}
+	}
+
+}
@@ -5,6 +5,7 @@ public class ComplexRaster {
 	
 	private Complex ul, lr;
 	private int height, width, maxh, maxw;
+	private double dx, dy;
 	
 	/**
 	 * Constructs an immutable correspondence to the specified Complex space.
@@ -22,6 +23,22 @@ public class ComplexRaster {
 		this.width = width;	
 		maxh = height-1;
 		maxw = width-1;
+		dx = Math.abs(ul.getReal() - lr.getReal())/maxw;
+		dy = Math.abs(ul.getImaginary() - lr.getImaginary())/maxh;
+	}
+
+	/**
+	 * A raster given by its corner and pixel spacing, which also works for a single row or column.
+	 */
+	private ComplexRaster(Complex ul, double dx, double dy, int height, int width) {
+		this.ul = ul;
+		this.height = height;
+		this.width = width;
+		maxh = height-1;
+		maxw = width-1;
+		this.dx = dx;
+		this.dy = dy;
+		lr = new Complex(ul.getReal() + dx*maxw, ul.getImaginary() - dy*maxh);
 	}
 
 	/**
@@ -31,11 +48,7 @@ public class ComplexRaster {
 	 * @return the Complex value associated with the specified pixel
 	 */
 	public Complex getPoint(Point p) {
-		double cw = Math.abs(ul.getReal() - lr.getReal());
-		double ch = Math.abs(ul.getImaginary() - lr.getImaginary());
-		double w = (cw/maxw)*p.getX();
-		double h = (ch/maxh)*p.getY();
-		return new Complex(ul.getReal() + w, ul.getImaginary() - h);
+		return getPoint(p.getX(), p.getY());
 	}
 	
 	/**
@@ -45,11 +58,80 @@ public class ComplexRaster {
 	 * @return
 	 */
 	public Complex getPoint(double x, double y) {
-		double cw = Math.abs(ul.getReal() - lr.getReal());
-		double ch = Math.abs(ul.getImaginary() - lr.getImaginary());
-		double w = (cw/maxw)*x;
-		double h = (ch/maxh)*y;
-		return new Complex(ul.getReal() + w, ul.getImaginary() - h);
+		return new Complex(getReal(x), getImaginary(y));
+	}
+
+	/**
+	 * Real part of getPoint(x, y), without making a Complex.
+	 * @param x horizontal coordinate of the pixel of interest
+	 * @return the real component at that column
+	 */
+	public double getReal(double x) {
+		return ul.getReal() + dx*x;
+	}
+
+	/**
+	 * Imaginary part of getPoint(x, y), without making a Complex.
+	 * @param y vertical coordinate of the pixel of interest
+	 * @return the imaginary component at that row
+	 */
+	public double getImaginary(double y) {
+		return ul.getImaginary() - dy*y;
+	}
+
+	/**
+	 * @return the distance along the real axis from one pixel to the next
+	 */
+	public double getPixelWidth() {
+		return dx;
+	}
+
+	/**
+	 * @return the distance along the imaginary axis from one pixel to the next
+	 */
+	public double getPixelHeight() {
+		return dy;
+	}
+
+	/**
+	 * The raster for a square zoom box of this one, with the same size in
+	 *   pixels.  The box is taken as it is, so a box of any size zooms by
+	 *   width/size.  The two grids only share points when the box is
+	 *   width/n or width*n pixels for a whole number n and its corner is a
+	 *   pixel of the finer grid, as with Julia.zoomIn and zoomOut.  Zooming
+	 *   in by n, every n'th sample of the new raster in both directions is
+	 *   then a sample of this one; zooming out by n, the new raster keeps
+	 *   every n'th sample of this one in both directions, one in n*n of them.
+	 * @param ul pixel of this raster that becomes the upper-left corner; may lie outside it
+	 * @param size width and height of the box in pixels of this raster
+	 * @return the zoomed raster
+	 */
+	public ComplexRaster zoom(Point ul, int size) {
+		double scale = zoomFactor(size, width);
+		Complex corner = getPoint(ul);
+		Complex opposite = new Complex(corner.getReal() + dx*maxw*scale, corner.getImaginary() - dy*maxh*scale);
+		return new ComplexRaster(corner, opposite, height, width);
+	}
+
+	/**
+	 * Some whole rows of this raster as a raster of their own, with the same
+	 *   pixel spacing, for rendering a big view a strip at a time.
+	 * @param y first row of the strip
+	 * @param rows number of rows, 1 or more
+	 * @return the strip
+	 */
+	public ComplexRaster strip(int y, int rows) {
+		return new ComplexRaster(new Complex(ul.getReal(), getImaginary(y)), dx, dy, rows, width);
+	}
+
+	/**
+	 * How much bigger a pixel of a zoom box is than a pixel of the raster it
+	 *   is drawn on.
+	 * @param size width of the box in pixels
+	 * @param width width of the raster in pixels
+	 */
+	static double zoomFactor(int size, int width) {
+		return (double) size / width;
 	}
 
 	/**
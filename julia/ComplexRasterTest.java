@@ -47,4 +47,16 @@ public class ComplexRasterTest {
 		
 	}
 
+	@Test
+	public void testStrip() {
+		ComplexRaster strip = cr.strip(10, 1);
+		assertEquals(1, strip.getHeight());
+		assertEquals(size, strip.getWidth());
+		for (int i=0; i < size; ++i) {
+			checkComplex(cr.getReal(i), cr.getImaginary(10), strip.getPoint(i, 0));
+		}
+		strip = cr.strip(3, 5);
+		checkComplex(cr.getReal(7), cr.getImaginary(7), strip.getPoint(7, 4));
+	}
+
 }
@@ -0,0 +1,203 @@
+package julia;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the frames of one view while the constant c moves along a path,
+ *   the Julia set morphing from frame to frame.  Neighboring frames have
+ *   nearly the same c and so nearly the same picture, and each frame is
+ *   rendered with the last one as a guide:
+ *   <ul>
+ *   <li>Tiles are Mariani-Silver subdivided, but a rectangle is only filled
+ *   when its border has one count now and had that same count in the last
+ *   frame (see TileRenderer.render(b, last, ...)).  Nothing is copied from
+ *   the last frame, so no error carries over from frame to frame, and the
+ *   first frame is computed in full.</li>
+ *   <li>Tiles are started most expensive first, going by the iterations
+ *   they took in the last frame, so the last tiles to finish are cheap
+ *   ones and the workers finish together.</li>
+ *   <li>With setAdaptiveLimit, each frame's iteration limit is seeded from
+ *   the counts of the last one.  The last frame only guides subdivision at
+ *   the same limit, so the limit moves in powers of two.</li>
+ *   </ul>
+ *   Frames are a pipeline: while one frame is computed on the renderer's
+ *   pool, the ones before it are colored and written on a Pipeline's thread.
+ * @author Ross Larson
+ *
+ */
+public class ConstantSweep {
+
+	/**
+	 * Computed frames waiting to be colored and written
+	 */
+	private static final int DEPTH = 2;
+
+	/**
+	 * Told about every frame once it is computed, on the rendering thread.
+	 */
+	public interface FrameListener {
+		/**
+		 * @param frame number of the frame, from 0
+		 * @param cRe real part of the frame's constant
+		 * @param cIm imaginary part of the frame's constant
+		 * @param maxIters the frame's iteration limit
+		 * @param nanos time the frame took to compute, not counting coloring and writing
+		 */
+		void frameDone(int frame, double cRe, double cIm, int maxIters, long nanos);
+	}
+
+	/**
+	 * A computed frame on its way to the writer.
+	 */
+	private static class Frame {
+		final IterationBuffer b;
+		final int limit;
+
+		Frame(IterationBuffer b, int limit) {
+			this.b = b;
+			this.limit = limit;
+		}
+	}
+
+	private TileRenderer renderer;
+	private ColorPass colors;
+	private FrameListener listener;
+	private int minIters, maxIters;
+
+	/**
+	 * @param renderer computes the frames, with its formula, on its pool
+	 * @param colors colors the frames, on the writer thread
+	 */
+	public ConstantSweep(TileRenderer renderer, ColorPass colors) {
+		this.renderer = renderer;
+		this.colors = colors;
+	}
+
+	/**
+	 * Seed each frame's iteration limit from the last frame: twice its
+	 *   highest count of an escaped pixel, rounded up to a power of two.
+	 * @param min lowest limit to use
+	 * @param max highest limit to use; 0 turns it off and every frame gets the limit given to render()
+	 */
+	public void setAdaptiveLimit(int min, int max) {
+		minIters = min;
+		maxIters = max;
+	}
+
+	public void setFrameListener(FrameListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * The constant of one frame of a sweep.  The frames are spread evenly
+	 *   over the segments of the path, and evenly along each segment.
+	 * @param re real parts of the points of the path, 1 or more
+	 * @param im imaginary parts of the points of the path
+	 * @param frames number of frames
+	 * @param frame which one, from 0 to frames - 1
+	 * @return the real and imaginary part of c
+	 */
+	public static double[] constant(double[] re, double[] im, int frames, int frame) {
+		if (re.length == 1 || frames == 1) {
+			return new double[] { re[0], im[0] };
+		}
+		double t = frame * (re.length - 1) / (double) (frames - 1);
+		int i = Math.min((int) t, re.length - 2);
+		double f = t - i;
+		return new double[] { re[i] + f*(re[i + 1] - re[i]), im[i] + f*(im[i + 1] - im[i]) };
+	}
+
+	/**
+	 * Render every frame of a sweep and hand it to out, then close out.
+	 * @param view the viewport of every frame
+	 * @param re real parts of the points of c's path
+	 * @param im imaginary parts of the points of c's path
+	 * @param frames number of frames
+	 * @param limit iteration limit of every frame, or of the first with setAdaptiveLimit
+	 * @param out receives the frames in order
+	 * @throws IOException if out fails, or the thread is interrupted; anything
+	 *   else out or the coloring throws is thrown as it is, once the rendering has stopped
+	 */
+	public void render(ComplexRaster view, double[] re, double[] im, final int frames, int limit,
+			final ZoomAnimation.FrameWriter out) throws IOException {
+		final int width = view.getWidth(), height = view.getHeight();
+		Pipeline<Frame> writer = new Pipeline<Frame>("sweep writer", DEPTH, frames, new Pipeline.Stage<Frame>() {
+			private int[] argb = new int[width*height];
+
+			public void take(int n, Frame f) throws IOException {
+				colors.apply(f.b.getIterations(), f.b.getPeriods(), width, height, f.limit, 1, argb);
+				out.write(n, argb, width, height);
+			}
+		});
+		try {
+			IterationBuffer last = null;
+			int lastLimit = 0;
+			for (int n = 0; n < frames; n++) {
+				double[] c = constant(re, im, frames, n);
+				long start = System.nanoTime();
+				if (last != null && maxIters > 0) {
+					limit = seed(last, lastLimit);
+				}
+				IterationBuffer b = new IterationBuffer(view);
+				List<Rectangle> tiles = TileRenderer.tiles(width, height);
+				if (last != null) {
+					byCost(last, lastLimit, tiles);
+				}
+				renderer.render(b, last != null && limit == lastLimit ? last : null, c[0], c[1], limit, tiles, null);
+				if (listener != null) {
+					listener.frameDone(n, c[0], c[1], limit, System.nanoTime() - start);
+				}
+				writer.put(new Frame(b, limit));
+				last = b;
+				lastLimit = limit;
+			}
+			writer.finish();
+		} finally {
+			// only does anything when the renderer did not get to the end
+			writer.stop();
+		}
+		out.close();
+	}
+
+	/**
+	 * @return the limit for the frame after last
+	 */
+	private int seed(IterationBuffer last, int lastLimit) {
+		int highest = 1;
+		for (int count : last.getIterations()) {
+			if (count < lastLimit && count > highest) {
+				highest = count;
+			}
+		}
+		int limit = Integer.highestOneBit(2*highest - 1) << 1;
+		return Math.max(minIters, Math.min(maxIters, limit));
+	}
+
+	/**
+	 * Sort tiles by the iterations they took in the last frame, most first.
+	 */
+	private static void byCost(IterationBuffer last, int lastLimit, List<Rectangle> tiles) {
+		final Map<Rectangle, Long> cost = new HashMap<Rectangle, Long>();
+		int width = last.getWidth();
+		for (Rectangle t : tiles) {
+			long sum = 0;
+			for (int y = t.y; y < t.y + t.height; y++) {
+				for (int x = t.x; x < t.x + t.width; x++) {
+					sum += Math.min(last.iters[y*width + x], lastLimit);
+				}
+			}
+			cost.put(t, sum);
+		}
+		Collections.sort(tiles, new Comparator<Rectangle>() {
+			public int compare(Rectangle a, Rectangle b) {
+				return Long.compare(cost.get(b), cost.get(a));
+			}
+		});
+	}
+}
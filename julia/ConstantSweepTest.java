@@ -0,0 +1,96 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class ConstantSweepTest {
+
+	final private double[] re = { -.8, -.79 }, im = { .156, .158 };
+	final private ComplexRaster view = new ComplexRaster(new Complex(-1.6, 1.6), new Complex(1.6, -1.6), 128, 128);
+
+	@Test
+	public void constantAlongThePath() {
+		double[] pathRe = { 0, 1, 1 }, pathIm = { 0, 0, 2 };
+		assertArrayEquals(new double[] { 0, 0 }, ConstantSweep.constant(pathRe, pathIm, 5, 0), 1e-12);
+		assertArrayEquals(new double[] { .5, 0 }, ConstantSweep.constant(pathRe, pathIm, 5, 1), 1e-12);
+		assertArrayEquals(new double[] { 1, 0 }, ConstantSweep.constant(pathRe, pathIm, 5, 2), 1e-12);
+		assertArrayEquals(new double[] { 1, 2 }, ConstantSweep.constant(pathRe, pathIm, 5, 4), 1e-12);
+		assertArrayEquals(new double[] { 3, 4 }, ConstantSweep.constant(new double[] { 3 }, new double[] { 4 }, 5, 2), 0);
+	}
+
+	@Test
+	public void framesSameAsRenders() throws IOException {
+		TileRenderer renderer = new TileRenderer(2);
+		renderer.setSymmetry(true);
+		final ColorPass colors = new ColorPass(renderer.getPool());
+		ConstantSweep sweep = new ConstantSweep(renderer, colors);
+		final List<int[]> frames = new ArrayList<int[]>();
+		sweep.render(view, re, im, 20, 300, new ZoomAnimation.FrameWriter() {
+			public void write(int frame, int[] argb, int width, int height) {
+				assertEquals(frames.size(), frame);
+				frames.add(argb.clone());
+			}
+
+			public void close() {
+			}
+		});
+		assertEquals(20, frames.size());
+		for (int n = 0; n < 20; n++) {
+			double[] c = ConstantSweep.constant(re, im, 20, n);
+			IterationBuffer b = new IterationBuffer(view);
+			renderer.render(b, c[0], c[1], 300, null);
+			int[] argb = new int[128*128];
+			colors.apply(b.getIterations(), b.getPeriods(), 128, 128, 300, 1, argb);
+			assertArrayEquals("frame " + n, argb, frames.get(n));
+		}
+	}
+
+	@Test
+	public void adaptiveLimitInRange() throws IOException {
+		ConstantSweep sweep = new ConstantSweep(new TileRenderer(2), new ColorPass(null));
+		sweep.setAdaptiveLimit(64, 1024);
+		final List<Integer> limits = new ArrayList<Integer>();
+		sweep.setFrameListener(new ConstantSweep.FrameListener() {
+			public void frameDone(int frame, double cRe, double cIm, int maxIters, long nanos) {
+				limits.add(maxIters);
+			}
+		});
+		sweep.render(view, re, im, 4, 5000, new ZoomAnimation.FrameWriter() {
+			public void write(int frame, int[] argb, int width, int height) {
+			}
+
+			public void close() {
+			}
+		});
+		assertEquals(5000, (int) limits.get(0));
+		for (int n = 1; n < 4; n++) {
+			int limit = limits.get(n);
+			assertTrue(limit >= 64 && limit <= 1024);
+			assertEquals(0, limit & (limit - 1));
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void failingWriterStopsTheSweep() throws IOException {
+		ConstantSweep sweep = new ConstantSweep(new TileRenderer(2), new ColorPass(null));
+		try {
+			sweep.render(view, re, im, 20, 100, new ZoomAnimation.FrameWriter() {
+				public void write(int frame, int[] argb, int width, int height) {
+					throw new IllegalStateException("frame " + frame);
+				}
+
+				public void close() {
+				}
+			});
+			fail("the writer's exception was lost");
+		} catch (IllegalStateException e) {
+			assertEquals("frame 0", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package julia;
+
+import java.awt.Point;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * A viewport given by its center and the distance between pixels, for
+ *   zooms too deep for ComplexRaster.  The center is kept to as many
+ *   digits as the zoom needs; the pixels themselves are only ever handled
+ *   as double offsets from the center, which are exact enough at any depth.
+ *   Like ComplexRaster it is immutable, and its pixels are square.
+ * @author Ross Larson
+ *
+ */
+public class DeepRaster {
+
+	/**
+	 * Digits kept beyond the ones needed to tell neighboring pixels apart
+	 */
+	private static final int GUARD_DIGITS = 10;
+
+	private BigDecimal re, im;
+	private double scale;
+	private int height, width;
+
+	/**
+	 * @param re real part of the center
+	 * @param im imaginary part of the center
+	 * @param scale distance between neighboring pixels
+	 * @param height in pixels
+	 * @param width in pixels
+	 */
+	public DeepRaster(BigDecimal re, BigDecimal im, double scale, int height, int width) {
+		this.re = re;
+		this.im = im;
+		this.scale = scale;
+		this.height = height;
+		this.width = width;
+	}
+
+	/**
+	 * The same view as a ComplexRaster, assuming its pixels are square.
+	 */
+	public static DeepRaster of(ComplexRaster cr) {
+		BigDecimal two = BigDecimal.valueOf(2);
+		BigDecimal re = new BigDecimal(cr.getReal(0)).add(new BigDecimal(cr.getReal(cr.getWidth() - 1))).divide(two);
+		BigDecimal im = new BigDecimal(cr.getImaginary(0)).add(new BigDecimal(cr.getImaginary(cr.getHeight() - 1))).divide(two);
+		return new DeepRaster(re, im, cr.getPixelWidth(), cr.getHeight(), cr.getWidth());
+	}
+
+	public BigDecimal getCenterReal() {
+		return re;
+	}
+
+	public BigDecimal getCenterImaginary() {
+		return im;
+	}
+
+	/**
+	 * @return the distance between neighboring pixels
+	 */
+	public double getScale() {
+		return scale;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return real distance from the center to column x
+	 */
+	public double getOffsetReal(double x) {
+		return (x - (width - 1) / 2.0) * scale;
+	}
+
+	/**
+	 * @return imaginary distance from the center to row y
+	 */
+	public double getOffsetImaginary(double y) {
+		return ((height - 1) / 2.0 - y) * scale;
+	}
+
+	/**
+	 * @return enough precision to tell neighboring pixels apart anywhere within radius 2
+	 */
+	public MathContext getMathContext() {
+		int digits = (int) Math.ceil(-Math.log10(scale)) + GUARD_DIGITS;
+		return new MathContext(Math.max(digits, 17));
+	}
+
+	/**
+	 * The raster for a square zoom box of this one, zoomed the same way as
+	 *   ComplexRaster.zoom.
+	 * @param ul pixel of this raster that becomes the upper-left corner; may lie outside it
+	 * @param size width and height of the box in pixels of this raster
+	 * @return the zoomed raster
+	 */
+	public DeepRaster zoom(Point ul, int size) {
+		double f = ComplexRaster.zoomFactor(size, width);
+		double cx = ul.getX() + (width - 1) / 2.0 * f;
+		double cy = ul.getY() + (height - 1) / 2.0 * f;
+		DeepRaster zoomed = new DeepRaster(re, im, scale * f, height, width);
+		MathContext mc = zoomed.getMathContext();
+		zoomed.re = re.add(new BigDecimal(getOffsetReal(cx)), mc);
+		zoomed.im = im.add(new BigDecimal(getOffsetImaginary(cy)), mc);
+		return zoomed;
+	}
+
+	/**
+	 * The same view with double corners, which is only faithful while the
+	 *   scale is well above the spacing of doubles near the center.
+	 */
+	public ComplexRaster toRaster() {
+		double r = re.doubleValue(), i = im.doubleValue();
+		Complex ul = new Complex(r + getOffsetReal(0), i + getOffsetImaginary(0));
+		Complex lr = new Complex(r + getOffsetReal(width - 1), i + getOffsetImaginary(height - 1));
+		return new ComplexRaster(ul, lr, height, width);
+	}
+}
@@ -0,0 +1,154 @@
+package julia;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Escape-time rendering in double-double arithmetic, for zooms a little
+ *   too deep for doubles.  Every number is an unevaluated sum hi + lo of
+ *   two doubles, good for about 106 bits, or 32 digits.  The pairs are
+ *   kept in local variables, and the exact products and sums they need
+ *   come from Math.fma and Knuth's two-sum, so nothing is allocated.
+ *   Each pixel is iterated on its own, with no reference orbit, so there
+ *   are no glitches to worry about; it costs several times a double
+ *   iteration, which is why Julia only uses it down to where
+ *   perturbation takes over.
+ * @author Ross Larson
+ *
+ */
+public class DoubleDoubleRenderer {
+
+	/**
+	 * Rows per task when rendering in parallel
+	 */
+	private static final int ROWS = 8;
+
+	/**
+	 * Smallest pixel spacing double-double can still resolve near radius 2
+	 */
+	public static final double SMALLEST_SCALE = 1e-28;
+
+	private ForkJoinPool pool;
+
+	/**
+	 * @param pool pool to render rows on in parallel, or null to render on the calling thread
+	 */
+	public DoubleDoubleRenderer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Fill out with the iteration count of every pixel of the view.
+	 *   Pixel (x, y) goes to out[y*width + x].
+	 * @param view the viewport
+	 * @param cRe real part of the Julia constant
+	 * @param cIm imaginary part of the Julia constant
+	 * @param maxIters iteration limit
+	 * @param out one int per pixel
+	 * @param cancelled checked before each block of rows, may be null
+	 */
+	public void render(DeepRaster view, double cRe, double cIm, int maxIters, int[] out, AtomicBoolean cancelled) {
+		if (pool == null) {
+			renderRows(view, cRe, cIm, 0, view.getHeight(), maxIters, out, cancelled);
+		}
+		else {
+			pool.invoke(new RowTask(view, cRe, cIm, 0, view.getHeight(), maxIters, out, cancelled));
+		}
+	}
+
+	private void renderRows(DeepRaster view, double cRe, double cIm, int from, int to, int maxIters, int[] out,
+			AtomicBoolean cancelled) {
+		if (cancelled != null && cancelled.get()) {
+			throw new CancellationException();
+		}
+		// the center split into hi + lo; each pixel adds its double offset exactly
+		BigDecimal re = view.getCenterReal(), im = view.getCenterImaginary();
+		double reHi = re.doubleValue(), reLo = re.subtract(new BigDecimal(reHi)).doubleValue();
+		double imHi = im.doubleValue(), imLo = im.subtract(new BigDecimal(imHi)).doubleValue();
+		int width = view.getWidth();
+		for (int y = from; y < to; y++) {
+			double d = view.getOffsetImaginary(y);
+			double ih = imHi + d, v = ih - imHi;
+			double il = (imHi - (ih - v)) + (d - v) + imLo;
+			double yh = ih + il, yl = il - (yh - ih);
+			for (int x = 0; x < width; x++) {
+				d = view.getOffsetReal(x);
+				double rh = reHi + d;
+				v = rh - reHi;
+				double rl = (reHi - (rh - v)) + (d - v) + reLo;
+				double xh = rh + rl, xl = rl - (xh - rh);
+				out[y*width + x] = iterate(xh, xl, yh, yl, cRe, cIm, maxIters);
+			}
+		}
+	}
+
+	/**
+	 * Iterate z = z*z + c in double-double starting from z = (reHi + reLo) + (imHi + imLo)i.
+	 * @param cRe real part of the constant, taken as exact
+	 * @param cIm imaginary part of the constant, taken as exact
+	 * @param maxIters iteration limit
+	 * @return number of iterations done before z escaped, or maxIters
+	 */
+	static int iterate(double reHi, double reLo, double imHi, double imLo, double cRe, double cIm, int maxIters) {
+		int iters = 0;
+		while ((imHi*imHi + reHi*reHi < ScalarEngine.ESCAPE) && (iters < maxIters)) {
+			// re*re, im*im and re*im, each as a rounded product plus its error
+			double rr = reHi*reHi, rrErr = Math.fma(reHi, reHi, -rr) + 2*reHi*reLo;
+			double ii = imHi*imHi, iiErr = Math.fma(imHi, imHi, -ii) + 2*imHi*imLo;
+			double ri = reHi*imHi, riErr = Math.fma(reHi, imHi, -ri) + (reHi*imLo + reLo*imHi);
+			// real part: rr - ii + cRe, adding up the rounding errors of both sums
+			double s = rr - ii, v = s - rr;
+			double e = (rr - (s - v)) - (ii + v) + (rrErr - iiErr);
+			double t = s + cRe;
+			v = t - s;
+			e += (s - (t - v)) + (cRe - v);
+			double hi = t + e;
+			reLo = e - (hi - t);
+			reHi = hi;
+			// imaginary part: 2*ri + cIm, where doubling is exact
+			s = 2*ri;
+			e = 2*riErr;
+			t = s + cIm;
+			v = t - s;
+			e += (s - (t - v)) + (cIm - v);
+			imHi = t + e;
+			imLo = e - (imHi - t);
+			iters++;
+		}
+		return iters;
+	}
+
+	private class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private DeepRaster view;
+		private double cRe, cIm;
+		private int from, to, maxIters;
+		private int[] out;
+		private AtomicBoolean cancelled;
+
+		RowTask(DeepRaster view, double cRe, double cIm, int from, int to, int maxIters, int[] out,
+				AtomicBoolean cancelled) {
+			this.view = view;
+			this.cRe = cRe;
+			this.cIm = cIm;
+			this.from = from;
+			this.to = to;
+			this.maxIters = maxIters;
+			this.out = out;
+			this.cancelled = cancelled;
+		}
+
+		protected void compute() {
+			if (to - from <= ROWS) {
+				renderRows(view, cRe, cIm, from, to, maxIters, out, cancelled);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RowTask(view, cRe, cIm, from, mid, maxIters, out, cancelled),
+					new RowTask(view, cRe, cIm, mid, to, maxIters, out, cancelled));
+		}
+	}
+}
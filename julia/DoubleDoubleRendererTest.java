@@ -0,0 +1,49 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import org.junit.Test;
+
+
+public class DoubleDoubleRendererTest {
+
+	final private double cRe = -.7795, cIm = .134;
+
+	private int same(int[] a, int[] b) {
+		int same = 0;
+		for (int i = 0; i < a.length; ++i) {
+			if (a[i] == b[i]) {
+				same++;
+			}
+		}
+		return same;
+	}
+
+	@Test
+	public void shallowSameAsDouble() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 64, 64);
+		int[] expected = new int[64*64];
+		new TileRenderer(2).render(cr, cRe, cIm, 300, expected);
+		int[] actual = new int[64*64];
+		new DoubleDoubleRenderer(null).render(DeepRaster.of(cr), cRe, cIm, 300, actual, null);
+		assertTrue(same(expected, actual) > expected.length * 99 / 100);
+	}
+
+	@Test
+	public void deeperThanDouble() {
+		BigDecimal[] fixed = PerturbationRendererTest.fixedPoint(cRe, cIm, new MathContext(40));
+		DeepRaster view = new DeepRaster(fixed[0].add(new BigDecimal("3e-21")), fixed[1], 1e-22, 32, 32);
+		int[] expected = new int[32*32];
+		new PerturbationRenderer(null).render(view, cRe, cIm, 400, expected, null);
+		int[] actual = new int[32*32];
+		new DoubleDoubleRenderer(new java.util.concurrent.ForkJoinPool(2)).render(view, cRe, cIm, 400, actual, null);
+		assertTrue(same(expected, actual) > expected.length * 99 / 100);
+		// plain doubles cannot tell these pixels apart at all
+		int[] flat = new int[32*32];
+		new TileRenderer(2).render(view.toRaster(), cRe, cIm, 400, flat);
+		assertTrue(same(expected, flat) < expected.length / 2);
+	}
+}
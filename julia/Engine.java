@@ -0,0 +1,35 @@
+package julia;
+
+/**
+ * Something that runs escape-time orbits of z*z + c for the pixels of an
+ *   IterationBuffer.  Engines are interchangeable: given the same buffer
+ *   they must leave it with the same counts and orbits as ScalarEngine.
+ *   The one exception is FloatEngine, which trades a few edge pixels for speed.
+ *   A FractalFormula is an engine for a formula of its own.
+ * @author Ross Larson
+ *
+ */
+public interface Engine {
+
+	/**
+	 * Continue the orbits of count pixels of a buffer, taking every stride'th
+	 *   pixel from index start on.  Each pixel picks up from its stored z and
+	 *   count, runs until it escapes or reaches maxIters, and has its state
+	 *   written back.  Pixels that escaped earlier are left alone.  An engine
+	 *   may stop a pixel early when its orbit is caught in a cycle; its count
+	 *   becomes IterationBuffer.INTERIOR and the cycle length is recorded.
+	 * @param b the per-pixel state
+	 * @param start index of the first pixel
+	 * @param count number of pixels
+	 * @param stride distance between the pixels
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param maxIters iteration limit
+	 */
+	void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters);
+
+	/**
+	 * @return a short name for reports and menus
+	 */
+	String getName();
+}
@@ -0,0 +1,68 @@
+package julia;
+
+/**
+ * Picks an escape-time engine for the machine we are running on.
+ * @author Ross Larson
+ *
+ */
+public class Engines {
+
+	private static Engine vector, floats;
+	private static boolean probed;
+
+	/**
+	 * @return the plain double engine, which works everywhere
+	 */
+	public static Engine scalar() {
+		return new ScalarEngine();
+	}
+
+	/**
+	 * The Vector API engine, or null when this JVM was started without the
+	 *   jdk.incubator.vector module.  VectorEngine is only loaded by name here,
+	 *   so nothing else breaks when the module is missing.
+	 * @return the vector engine, or null
+	 */
+	public static synchronized Engine vector() {
+		probe();
+		return vector;
+	}
+
+	/**
+	 * The float Vector API engine for shallow views, or null when this JVM
+	 *   was started without the jdk.incubator.vector module.
+	 * @return the float engine, or null
+	 */
+	public static synchronized Engine floats() {
+		probe();
+		return floats;
+	}
+
+	private static void probe() {
+		if (!probed) {
+			probed = true;
+			if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+				vector = load("julia.VectorEngine");
+				floats = load("julia.FloatEngine");
+			}
+		}
+	}
+
+	private static Engine load(String name) {
+		try {
+			return (Engine) Class.forName(name).getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the fastest engine available: the vector one if it loads, otherwise the scalar one
+	 */
+	public static Engine best() {
+		Engine e = vector();
+		return e != null ? e : scalar();
+	}
+}
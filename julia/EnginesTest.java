@@ -0,0 +1,118 @@
+package julia;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import org.junit.Test;
+
+
+public class EnginesTest {
+	
+	final private double cRe = -.7795, cIm = .134;
+	ComplexRaster cr = new ComplexRaster(new Complex(-1.5, 1.2), new Complex(1.1, -1.3), 51, 67);
+	
+	private IterationBuffer run(Engine engine, int stride, int maxIters) {
+		return run(engine, stride, maxIters, cRe, cIm);
+	}
+	
+	private IterationBuffer run(Engine engine, int stride, int maxIters, double cRe, double cIm) {
+		IterationBuffer b = new IterationBuffer(cr);
+		int w = cr.getWidth();
+		for (int y = 0; y < cr.getHeight(); ++y) {
+			engine.advance(b, y*w + 1, (w - 1 + stride - 1)/stride, stride, cRe, cIm, maxIters);
+		}
+		return b;
+	}
+	
+	private void checkSame(Engine engine) {
+		for (int stride : new int[] { 1, 3 }) {
+			IterationBuffer expected = run(Engines.scalar(), stride, 200);
+			IterationBuffer actual = run(engine, stride, 200);
+			assertArrayEquals(expected.getIterations(), actual.getIterations());
+			assertArrayEquals(expected.re, actual.re, 0);
+			assertArrayEquals(expected.im, actual.im, 0);
+		}
+		// a constant in the period 2 bulb, so there are cycles to find
+		IterationBuffer expected = run(Engines.scalar(), 1, 2000, -1, .1);
+		IterationBuffer actual = run(engine, 1, 2000, -1, .1);
+		assertArrayEquals(expected.getIterations(), actual.getIterations());
+		assertArrayEquals(expected.getPeriods(), actual.getPeriods());
+	}
+	
+	@Test
+	public void cyclesAreInterior() {
+		IterationBuffer plain = run(new ScalarEngine(0), 1, 2000, -1, .1);
+		IterationBuffer checked = run(new ScalarEngine(), 1, 2000, -1, .1);
+		int cycles = 0;
+		for (int i = 0; i < plain.getIterations().length; ++i) {
+			int p = checked.getPeriods()[i];
+			if (plain.getIterations()[i] == 2000) {
+				assertEquals(IterationBuffer.INTERIOR, checked.getIterations()[i]);
+				// the attracting cycle of the period 2 bulb
+				assertEquals(0, p % 2);
+				cycles++;
+			}
+			else {
+				assertEquals(plain.getIterations()[i], checked.getIterations()[i]);
+				assertEquals(0, p);
+			}
+		}
+		assertTrue(cycles > 0);
+		assertEquals(0, plain.getPeriods()[0]);
+	}
+	
+	@Test
+	public void bestIsAlwaysThere() {
+		assertNotNull(Engines.best());
+		checkSame(Engines.best());
+	}
+	
+	@Test
+	public void vectorSameAsScalar() {
+		Engine vector = Engines.vector();
+		assumeNotNull(vector);
+		checkSame(vector);
+	}
+	
+	@Test
+	public void floatsNearlySameAsScalar() {
+		Engine floats = Engines.floats();
+		assumeNotNull(floats);
+		for (int stride : new int[] { 1, 3 }) {
+			int[] expected = run(Engines.scalar(), stride, 200).getIterations();
+			int[] actual = run(floats, stride, 200).getIterations();
+			int same = 0;
+			for (int i = 0; i < expected.length; ++i) {
+				if (expected[i] == actual[i]) {
+					same++;
+				}
+			}
+			assertTrue(same > expected.length * 99 / 100);
+		}
+		// cycles are still found, and have the period of the bulb
+		IterationBuffer b = run(floats, 1, 2000, -1, .1);
+		int cycles = 0;
+		for (int i = 0; i < b.getPeriods().length; ++i) {
+			if (b.getIterations()[i] == IterationBuffer.INTERIOR) {
+				assertEquals(0, b.getPeriods()[i] % 2);
+				cycles++;
+			}
+		}
+		assertTrue(cycles > 0);
+	}
+	
+	@Test
+	public void floatsOnlyForShallowViews() {
+		assumeNotNull(Engines.floats());
+		TileRenderer renderer = new TileRenderer(2);
+		renderer.setFloatEngine(Engines.floats());
+		// pixels 1e-6 apart are too close for floats, so the double engine renders them
+		ComplexRaster deep = new ComplexRaster(new Complex(-.3, .5), new Complex(-.3 + 63e-6, .5 - 63e-6), 64, 64);
+		int[] escalated = new int[64*64];
+		renderer.render(deep, cRe, cIm, 300, escalated);
+		int[] doubles = new int[64*64];
+		new TileRenderer(2).render(deep, cRe, cIm, 300, doubles);
+		assertArrayEquals(doubles, escalated);
+	}
+
+}
@@ -0,0 +1,127 @@
+package julia;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Escape-time engine that iterates in float instead of double, so a vector
+ *   holds twice as many pixels as in VectorEngine.  At shallow zooms, where
+ *   pixels are hundreds of floats apart, the counts are the same as with
+ *   doubles except for the odd pixel right on the edge of the set, where any
+ *   rounding can tip the balance.  TileRenderer only uses it for views whose
+ *   pixel spacing is at least TileRenderer.FLOAT_SCALE.  The orbits are
+ *   stored back in the buffer as doubles, so a double engine can continue them.
+ *   <p>
+ *   Needs the jdk.incubator.vector module, like VectorEngine; use
+ *   Engines.floats() to load it.
+ * @author Ross Larson
+ *
+ */
+public class FloatEngine implements Engine {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	/**
+	 * Squared magnitudes below this are still inside the radius 2 circle
+	 */
+	private static final float ESCAPE = 4.0f;
+
+	/**
+	 * Counts are kept in float lanes, which hold whole numbers exactly only up to here
+	 */
+	private static final int MAX_COUNT = 1 << 24;
+
+	private float epsilon;
+	private Engine wide;
+
+	/**
+	 * An engine that checks orbits for cycles with the default epsilon.
+	 */
+	public FloatEngine() {
+		this(ScalarEngine.PERIOD_EPSILON);
+	}
+
+	/**
+	 * @param epsilon cycle tolerance, as for ScalarEngine; 0 turns cycle checking off
+	 */
+	public FloatEngine(double epsilon) {
+		this.epsilon = (float) epsilon;
+		this.wide = new ScalarEngine(epsilon);
+	}
+
+	public void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		if (maxIters > MAX_COUNT) {
+			wide.advance(b, start, count, stride, cRe, cIm, maxIters);
+			return;
+		}
+		int lanes = SPECIES.length();
+		int[] counts = b.iters, periods = b.period;
+		double[] zr = b.re, zi = b.im;
+		float[] fr = new float[lanes], fi = new float[lanes], its = new float[lanes], found = new float[lanes];
+		float a = (float) cRe, c = (float) cIm;
+		int n = 0;
+		for (; n + lanes <= count; n += lanes) {
+			int base = start + n*stride;
+			for (int l = 0, i = base; l < lanes; l++, i += stride) {
+				fr[l] = (float) zr[i];
+				fi[l] = (float) zi[i];
+				its[l] = counts[i];
+			}
+			FloatVector re = FloatVector.fromArray(SPECIES, fr, 0);
+			FloatVector im = FloatVector.fromArray(SPECIES, fi, 0);
+			FloatVector it = FloatVector.fromArray(SPECIES, its, 0);
+			VectorMask<Float> active = im.mul(im).add(re.mul(re)).compare(VectorOperators.LT, ESCAPE)
+					.and(it.compare(VectorOperators.LT, maxIters));
+			if (!active.anyTrue()) {
+				// all of these are done already, leave them untouched
+				continue;
+			}
+			FloatVector savedRe = re, savedIm = im;
+			FloatVector period = FloatVector.zero(SPECIES);
+			int steps = 0, window = 1;
+			while (active.anyTrue()) {
+				FloatVector t = re.mul(re).sub(im.mul(im)).add(a);
+				FloatVector u = re.mul(im).add(im.mul(re)).add(c);
+				re = re.blend(t, active);
+				im = im.blend(u, active);
+				it = it.add(1.0f, active);
+				steps++;
+				VectorMask<Float> cycled = re.sub(savedRe).abs().compare(VectorOperators.LT, epsilon)
+						.and(im.sub(savedIm).abs().compare(VectorOperators.LT, epsilon)).and(active);
+				if (cycled.anyTrue()) {
+					period = period.blend((float) steps, cycled);
+					it = it.blend((float) IterationBuffer.INTERIOR, cycled);
+				}
+				if (steps == window) {
+					savedRe = re;
+					savedIm = im;
+					steps = 0;
+					window <<= 1;
+				}
+				active = im.mul(im).add(re.mul(re)).compare(VectorOperators.LT, ESCAPE)
+						.and(it.compare(VectorOperators.LT, maxIters));
+			}
+			re.intoArray(fr, 0);
+			im.intoArray(fi, 0);
+			it.intoArray(its, 0);
+			period.intoArray(found, 0);
+			for (int l = 0, i = base; l < lanes; l++, i += stride) {
+				zr[i] = fr[l];
+				zi[i] = fi[l];
+				// the float nearest INTERIOR is 2^31, which the cast brings back to INTERIOR
+				counts[i] = (int) its[l];
+				if (found[l] > 0) {
+					periods[i] = (int) found[l];
+				}
+			}
+		}
+		// fewer pixels left than lanes
+		wide.advance(b, start + n*stride, count - n, stride, cRe, cIm, maxIters);
+	}
+
+	public String getName() {
+		return "float" + SPECIES.length();
+	}
+}
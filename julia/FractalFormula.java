@@ -0,0 +1,47 @@
+package julia;
+
+/**
+ * An escape-time formula other than the engines' z*z + c, or z*z + c
+ *   itself (JuliaFormula).  Every formula is an Engine with an inner loop
+ *   of its own, written out in full in its own final class, so the loop
+ *   the JIT compiles for one formula never sees another one.  The renderer
+ *   makes one call per span of pixels; there is no virtual call per pixel
+ *   or per iteration.
+ *   <p>
+ *   A Julia-type formula iterates every pixel with the constant passed to
+ *   advance.  A parameter-plane formula, like the Mandelbrot set, uses each
+ *   pixel's own coordinate as c and ignores the constant.  Either way z
+ *   starts at the pixel's coordinate, as IterationBuffer sets it up.  For
+ *   a parameter-plane formula that is z1 = c of the usual iteration from
+ *   0, so its counts are one less than the textbook ones: a pixel the
+ *   usual count says escapes after n steps is counted as n - 1 here.  The
+ *   palette hides the shift, and maxIters is the limit on steps after z1.
+ * @author Ross Larson
+ *
+ */
+public abstract class FractalFormula implements Engine {
+
+	private boolean julia;
+
+	/**
+	 * @param julia true when c is the constant, false when it is the pixel's coordinate
+	 */
+	protected FractalFormula(boolean julia) {
+		this.julia = julia;
+	}
+
+	/**
+	 * @return true when c is the constant, false when it is the pixel's coordinate
+	 */
+	public boolean isJulia() {
+		return julia;
+	}
+
+	/**
+	 * @return true when the picture is unchanged by turning it half way
+	 *   around the origin, so the renderer may use PointSymmetry
+	 */
+	public boolean isPointSymmetric() {
+		return false;
+	}
+}
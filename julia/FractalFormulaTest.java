@@ -0,0 +1,64 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class FractalFormulaTest {
+
+	final private double cRe = -.7795, cIm = .134;
+	ComplexRaster cr = new ComplexRaster(new Complex(-2, 1.5), new Complex(1, -1.5), 61, 61);
+
+	private int[] render(FractalFormula formula, boolean symmetry, int maxIters) {
+		TileRenderer renderer = new TileRenderer(2);
+		renderer.setFormula(formula);
+		renderer.setSymmetry(symmetry);
+		int[] out = new int[61*61];
+		renderer.render(cr, cRe, cIm, maxIters, out);
+		return out;
+	}
+
+	@Test
+	public void squareIsQuadratic() {
+		// z^2 + c written out generally gives the same counts as the special cases
+		assertArrayEquals(render(new JuliaFormula(), false, 300), render(new MultibrotFormula(2, true), false, 300));
+		assertArrayEquals(render(new MandelbrotFormula(), false, 300), render(new MultibrotFormula(2, false), false, 300));
+	}
+
+	@Test
+	public void mandelbrot() {
+		IterationBuffer b = new IterationBuffer(new ComplexRaster(new Complex(0, 0), new Complex(1, -.5), 2, 2));
+		new MandelbrotFormula().advance(b, 0, 4, 1, cRe, cIm, 1000);
+		// 0 is the center of the main cardioid; z starts at c, not 0, so 1 is out after one step, at 2
+		// (the second step of the usual iteration)
+		assertEquals(IterationBuffer.INTERIOR, b.getIterations(0, 0));
+		assertEquals(1, b.getPeriod(0, 0));
+		assertEquals(1, b.getIterations(1, 0));
+	}
+
+	@Test
+	public void symmetricJuliaSets() {
+		ComplexRaster centered = new ComplexRaster(new Complex(-1.5, 1.5), new Complex(1.5, -1.5), 61, 61);
+		cr = centered;
+		FractalFormula[] formulas = { new BurningShipFormula(true), new TricornFormula(true), new MultibrotFormula(4, true) };
+		for (FractalFormula f : formulas) {
+			assertTrue(f.isPointSymmetric());
+			assertArrayEquals(f.getName(), render(f, false, 200), render(f, true, 200));
+		}
+		assertFalse(new MultibrotFormula(3, true).isPointSymmetric());
+		assertFalse(new MandelbrotFormula().isPointSymmetric());
+		assertFalse(new BurningShipFormula(false).isPointSymmetric());
+	}
+
+	@Test
+	public void parameterPlaneIgnoresConstant() {
+		FractalFormula ship = new BurningShipFormula(false);
+		TileRenderer renderer = new TileRenderer(2);
+		renderer.setFormula(ship);
+		int[] a = new int[61*61], b = new int[61*61];
+		renderer.render(cr, cRe, cIm, 200, a);
+		renderer.render(cr, .3, -.2, 200, b);
+		assertArrayEquals(a, b);
+	}
+}
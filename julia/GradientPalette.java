@@ -0,0 +1,46 @@
+package julia;
+
+import java.awt.Color;
+
+/**
+ * Blends evenly spaced color stops into a table, wrapping from the last
+ *   stop back to the first so that cycling has no seam.
+ * @author Ross Larson
+ *
+ */
+public class GradientPalette extends Palette {
+
+	private Color[] stops;
+
+	/**
+	 * @param size number of entries in the table
+	 * @param stops the colors to blend, at least one
+	 */
+	public GradientPalette(int size, Color... stops) {
+		super(size);
+		setStops(stops);
+	}
+
+	/**
+	 * Replace the color stops.  The table is rebuilt the next time it is used.
+	 * @param stops the colors to blend, at least one
+	 */
+	public void setStops(Color... stops) {
+		if (stops.length == 0)
+			throw new IllegalArgumentException("A gradient needs at least one color");
+		this.stops = stops.clone();
+		changed();
+	}
+
+	protected int compute(int index) {
+		double pos = index * (double) stops.length / size();
+		int i = (int) pos;
+		double f = pos - i;
+		Color a = stops[i % stops.length];
+		Color b = stops[(i+1) % stops.length];
+		int red = (int) Math.round(a.getRed() + f*(b.getRed() - a.getRed()));
+		int green = (int) Math.round(a.getGreen() + f*(b.getGreen() - a.getGreen()));
+		int blue = (int) Math.round(a.getBlue() + f*(b.getBlue() - a.getBlue()));
+		return 0xff000000 | (red << 16) | (green << 8) | blue;
+	}
+}
@@ -0,0 +1,27 @@
+package julia;
+
+import java.awt.Color;
+
+/**
+ * Runs once around the color wheel at full saturation and brightness.
+ *   With 256 entries it gives exactly the colors Julia has always drawn.
+ * @author Ross Larson
+ *
+ */
+public class HuePalette extends Palette {
+
+	public HuePalette() {
+		this(256);
+	}
+
+	/**
+	 * @param size number of steps around the color wheel
+	 */
+	public HuePalette(int size) {
+		super(size);
+	}
+
+	protected int compute(int index) {
+		return Color.HSBtoRGB(index/(float) Math.max(1, size()-1), 1.0f, 1.0f);
+	}
+}
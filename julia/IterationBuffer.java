@@ -0,0 +1,261 @@
+package julia;
+
+import java.util.Arrays;
+
+/**
+ * Per-pixel escape-time state for one ComplexRaster: the iteration count
+ *   and the current value of z of every pixel, one row after another.
+ *   Pixels that have not escaped can be iterated further from where they
+ *   stopped, so raising the iteration limit only costs the extra iterations.
+ * @author Ross Larson
+ *
+ */
+public class IterationBuffer {
+
+	/**
+	 * Count given to pixels whose orbit was caught in a cycle.  They can
+	 *   never escape, so they count as not escaped for every limit.
+	 */
+	public static final int INTERIOR = Integer.MAX_VALUE;
+
+	/**
+	 * How far, in pixels, a pixel may be from a pixel of another raster and
+	 *   still count as the same sample
+	 */
+	private static final double ALIGNED = 1e-6;
+
+	private ComplexRaster raster;
+	private PointSymmetry symmetry;
+	private int width, height;
+	private int limit;
+	private Engine engine;
+	private volatile boolean anyFilled;
+	final int[] iters, period;
+	final double[] re, im;
+	final boolean[] filled;
+	/**
+	 * Counts of the supersampled edge pixels, kept for recoloring; null
+	 *   until Julia supersamples this buffer
+	 */
+	Supersampler.Samples samples;
+
+	/**
+	 * Starts every pixel at its own coordinate with no iterations done.
+	 * @param raster the viewport the pixels belong to
+	 */
+	public IterationBuffer(ComplexRaster raster) {
+		this.raster = raster;
+		symmetry = PointSymmetry.of(raster);
+		width = raster.getWidth();
+		height = raster.getHeight();
+		iters = new int[width*height];
+		period = new int[width*height];
+		re = new double[width*height];
+		im = new double[width*height];
+		filled = new boolean[width*height];
+		for (int y = 0; y < height; y++) {
+			double i = raster.getImaginary(y);
+			for (int x = 0; x < width; x++) {
+				re[y*width + x] = raster.getReal(x);
+				im[y*width + x] = i;
+			}
+		}
+	}
+
+	/**
+	 * Give a whole rectangle the same count without iterating it, as
+	 *   Mariani-Silver subdivision does when a rectangle's border is all one
+	 *   count.  The orbits of filled pixels are not known, so they start over
+	 *   from their own coordinate the next time they are iterated (see refresh).
+	 * @param x left edge
+	 * @param y top edge
+	 * @param w width in pixels
+	 * @param h height in pixels
+	 * @param count the count for every pixel of the rectangle
+	 */
+	public void fill(int x, int y, int w, int h, int count) {
+		if (w <= 0 || h <= 0) {
+			return;
+		}
+		anyFilled = true;
+		for (int j = y; j < y + h; j++) {
+			int from = j*width + x;
+			Arrays.fill(iters, from, from + w, count);
+			Arrays.fill(period, from, from + w, 0);
+			Arrays.fill(filled, from, from + w, true);
+		}
+	}
+
+	/**
+	 * Take over the state of every pixel that is also a pixel of another
+	 *   buffer's raster, as after a zoom made with ComplexRaster.zoom.  Those
+	 *   pixels then continue from wherever the other buffer left them, so
+	 *   only the new points are computed from scratch.  Both buffers must
+	 *   have been iterated with the same constant.  Pixels of the other buffer
+	 *   that escaped before the first step are not taken over; they cost nothing
+	 *   to compute, and rounding alone can decide whether they escape at once.
+	 *   Nothing is taken over from a buffer of another engine (see setEngine),
+	 *   whose counts can differ, as the float engine's do from the double one's.
+	 * @param old the buffer of an earlier view
+	 * @return how many pixels were taken over
+	 */
+	public int reuse(IterationBuffer old) {
+		if (old.engine != engine) {
+			return 0;
+		}
+		ComplexRaster o = old.getRaster();
+		int[] cols = align(raster.getReal(0) - o.getReal(0), o.getPixelWidth(), raster.getPixelWidth(), width, old.width);
+		int[] rows = align(o.getImaginary(0) - raster.getImaginary(0), o.getPixelHeight(), raster.getPixelHeight(), height,
+				old.height);
+		if (cols == null || rows == null) {
+			return 0;
+		}
+		int taken = 0;
+		for (int y = 0; y < height; y++) {
+			if (rows[y] < 0) {
+				continue;
+			}
+			for (int x = 0; x < width; x++) {
+				int q = rows[y]*old.width + cols[x];
+				if (cols[x] < 0 || (old.iters[q] == 0 && !old.filled[q])) {
+					continue;
+				}
+				int p = y*width + x;
+				iters[p] = old.iters[q];
+				period[p] = old.period[q];
+				filled[p] = old.filled[q];
+				re[p] = old.re[q];
+				im[p] = old.im[q];
+				taken++;
+			}
+		}
+		if (taken > 0) {
+			anyFilled |= old.anyFilled;
+		}
+		return taken;
+	}
+
+	/**
+	 * Where each of n pixels along one axis falls among the oldN pixels of
+	 *   another raster along the same axis, -1 for the ones that fall between
+	 *   or outside them.
+	 * @param offset distance from the other raster's first pixel to this raster's first pixel
+	 * @param oldStep spacing of the other raster's pixels
+	 * @param step spacing of this raster's pixels
+	 * @return null when no pixel falls on the other grid
+	 */
+	private static int[] align(double offset, double oldStep, double step, int n, int oldN) {
+		int[] index = new int[n];
+		boolean any = false;
+		for (int i = 0; i < n; i++) {
+			double f = (offset + step*i) / oldStep;
+			long r = Math.round(f);
+			index[i] = Math.abs(f - r) <= ALIGNED && r >= 0 && r < oldN ? (int) r : -1;
+			any |= index[i] >= 0;
+		}
+		return any ? index : null;
+	}
+
+	/**
+	 * Put every filled pixel among count pixels, every stride'th from start,
+	 *   back at its own coordinate with no iterations done, so an engine can
+	 *   iterate it for real.  Cheap when nothing has been filled.
+	 */
+	void refresh(int start, int count, int stride) {
+		if (!anyFilled) {
+			return;
+		}
+		for (int n = 0, i = start; n < count; n++, i += stride) {
+			if (filled[i]) {
+				filled[i] = false;
+				iters[i] = 0;
+				period[i] = 0;
+				re[i] = raster.getReal(i % width);
+				im[i] = raster.getImaginary(i / width);
+			}
+		}
+	}
+
+	/**
+	 * Record that some pixels were given filled counts from outside, as
+	 *   TileCache does, so refresh looks for them.
+	 */
+	void noteFilled() {
+		anyFilled = true;
+	}
+
+	public ComplexRaster getRaster() {
+		return raster;
+	}
+
+	/**
+	 * @return how the pixels of the raster pair up through the origin, or null if they do not
+	 */
+	public PointSymmetry getSymmetry() {
+		return symmetry;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Record which engine iterates this buffer, so reuse can tell counts of
+	 *   different engines apart.
+	 * @param engine the engine, or null when not known
+	 */
+	public void setEngine(Engine engine) {
+		this.engine = engine;
+	}
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Every pixel has been iterated until it escaped or reached this many iterations.
+	 * @return the iteration limit the whole buffer is complete for, 0 when fresh
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Record that every pixel has been iterated up to limit.  Lowering the
+	 *   limit is ignored, since the counts are still good for the higher one.
+	 * @param limit iteration limit just completed
+	 */
+	public void setLimit(int limit) {
+		this.limit = Math.max(this.limit, limit);
+	}
+
+	/**
+	 * The iteration count of every pixel, one row after another.  A count
+	 *   at or above the limit being drawn means the pixel has not escaped.
+	 * @return the buffer's own array, not a copy
+	 */
+	public int[] getIterations() {
+		return iters;
+	}
+
+	public int getIterations(int x, int y) {
+		return iters[y*width + x];
+	}
+
+	/**
+	 * The cycle length of every pixel whose count is INTERIOR, and 0 for
+	 *   every other pixel, one row after another.
+	 * @return the buffer's own array, not a copy
+	 */
+	public int[] getPeriods() {
+		return period;
+	}
+
+	public int getPeriod(int x, int y) {
+		return period[y*width + x];
+	}
+}
@@ -1,17 +1,46 @@
 package julia;
 
-import java.awt.Color;
 import java.awt.Point;
+import java.math.BigDecimal;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import nip.Image;
 
 public class Julia {
 	
-	private Complex ul, lr, upL, lowR;
-	private int minw, minh, maxIters, wandh;
+	private static final double C_RE = -.7795, C_IM = .134;
+	
+	/**
+	 * Pixel spacing below which doubles can no longer tell pixels apart well.
+	 *   Deeper views are rendered in double-double down to its own limit,
+	 *   and by perturbation below that.
+	 */
+	private static final double DEEP = 1e-12;
+	
+	/**
+	 * Memory the tile cache may use, in bytes
+	 */
+	private static final long CACHE_BYTES = 64L << 20;
+	
+	private Complex ul, lr;
+	private int minw, minh, maxIters, wandh, antialias;
+	private int[] counts;
+	private double cRe, cIm;
 	private ComplexRaster cr;
+	private DeepRaster deep;
+	private DoubleDoubleRenderer doubleDouble;
+	private PerturbationRenderer perturbation;
+	private Supersampler supersampler;
+	private TileCache cache;
 	private Image image;
 	private Point pt;
+	private TileRenderer renderer;
+	private ColorPass colors;
+	private RenderService service;
+	private boolean reference, progressive;
 
 	/**
 	 * Constructor:  prepare to be able to draw on the supplied image.
@@ -25,9 +54,6 @@ public class Julia {
 		this.image = image;
 		ul = new Complex(-2, 2);
 		lr = new Complex(2, -2);
-		// due to the parameter Point ul in zoomTo, I decided to leave ul and lr alone, and make my own Complex numbers.
-		upL = ul;
-		lowR = lr;
 		
 		//should be same, but just in case
 		minw = image.getWidth();
@@ -35,8 +61,170 @@ public class Julia {
 		
 		//to store the upper left POINT
 		pt = new Point(0,0);
+		cRe = C_RE;
+		cIm = C_IM;
 		
 		cr = new ComplexRaster(ul, lr, minh, minw);
+		deep = DeepRaster.of(cr);
+		cache = new TileCache(cr, CACHE_BYTES);
+		setRenderer(new TileRenderer());
+		service = new RenderService();
+		progressive = true;
+	}
+	
+	/**
+	 * When on (the default), redraw() first shows a blocky 8 by 8 version of
+	 *   the view and sharpens it in three more passes, starting each pass at
+	 *   the center of the view.  draw() always renders in one pass.
+	 * @param progressive true to render coarse to fine in the background
+	 */
+	public void setProgressive(boolean progressive) {
+		this.progressive = progressive;
+	}
+	
+	/**
+	 * Choose the tile renderer used by draw() and redraw().  Its point
+	 *   symmetry shortcut is turned on when the formula has point symmetry,
+	 *   and off otherwise.
+	 * @param renderer the parallel renderer, or null to draw on the calling thread only
+	 */
+	public void setRenderer(TileRenderer renderer) {
+		if (renderer == null) {
+			renderer = new TileRenderer((ForkJoinPool) null);
+		}
+		if (this.renderer != null) {
+			renderer.setFormula(this.renderer.getFormula());
+		}
+		renderer.setSymmetry(renderer.getFormula().isPointSymmetric());
+		this.renderer = renderer;
+		doubleDouble = new DoubleDoubleRenderer(renderer.getPool());
+		perturbation = new PerturbationRenderer(renderer.getPool());
+		supersampler = new Supersampler(renderer);
+		ColorPass old = colors;
+		colors = new ColorPass(renderer.getPool());
+		if (old != null) {
+			colors.setOffset(old.getOffset());
+			colors.setPalette(old.getPalette());
+			colors.setInteriorPalette(old.getInteriorPalette());
+		}
+	}
+	
+	public TileRenderer getRenderer() {
+		return renderer;
+	}
+	
+	/**
+	 * @return the tiles of the views zoomIn and zoomOut have shown, with their hit and miss counts
+	 */
+	public TileCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Stop the background render, if any, and drop the counts kept from
+	 *   earlier renders, in the renderer and in the cache, so the next draw()
+	 *   starts from nothing.  For timing a draw.
+	 */
+	public void forget() {
+		// the render in progress stops at its next tile, and lets go of the lock
+		service.cancel();
+		synchronized (this) {
+			renderer.forget();
+			cache.clear();
+		}
+	}
+	
+	/**
+	 * Keep whole tiles on disk too, where later runs and other instances
+	 *   sharing the file find them.
+	 * @param store the file of tiles, or null to keep them in memory only
+	 */
+	public void setStore(TileStore store) {
+		cache.setStore(store);
+	}
+	
+	/**
+	 * Switch to another fractal and redraw, keeping the view.  Mirrored
+	 *   pixels are only copied for a formula with point symmetry.
+	 * @param formula what to iterate; JuliaFormula is the original picture
+	 */
+	public void setFormula(FractalFormula formula) {
+		// the render in progress stops at its next tile, and lets go of the lock
+		service.cancel();
+		synchronized (this) {
+			renderer.setFormula(formula);
+			renderer.setSymmetry(formula.isPointSymmetric());
+		}
+		redraw();
+	}
+	
+	public FractalFormula getFormula() {
+		return renderer.getFormula();
+	}
+	
+	/**
+	 * Change the constant c of the Julia-type formulas and redraw.
+	 * @param re real part of c
+	 * @param im imaginary part of c
+	 */
+	public void setConstant(double re, double im) {
+		service.cancel();
+		synchronized (this) {
+			cRe = re;
+			cIm = im;
+			renderer.forget();
+		}
+		redraw();
+	}
+	
+	/**
+	 * Switch to another fractal with a new constant c, and redraw once.
+	 * @param formula what to iterate
+	 * @param re real part of c
+	 * @param im imaginary part of c
+	 */
+	public void setFormula(FractalFormula formula, double re, double im) {
+		service.cancel();
+		synchronized (this) {
+			renderer.setFormula(formula);
+			renderer.setSymmetry(formula.isPointSymmetric());
+			cRe = re;
+			cIm = im;
+			renderer.forget();
+		}
+		redraw();
+	}
+	
+	/**
+	 * Smooth the edges of finished frames by supersampling the pixels whose
+	 *   count differs most from a neighbor's (see Supersampler).  Coarse progressive
+	 *   passes and deep views are drawn at one sample per pixel.
+	 * @param samples samples per pixel in each direction, such as 4; 1 or less turns it off
+	 */
+	public void setAntialias(int samples) {
+		antialias = samples;
+		recolor();
+	}
+	
+	/**
+	 * When on, shallow views are iterated in float, which is faster but can
+	 *   change a few pixels on the edge of the set.  Views deeper than
+	 *   TileRenderer.FLOAT_SCALE are iterated in double either way.  Does
+	 *   nothing when the float engine cannot be loaded.
+	 * @param on true to use floats where they are good enough
+	 */
+	public void setFloatPrecision(boolean on) {
+		renderer.setFloatEngine(on ? Engines.floats() : null);
+	}
+	
+	/**
+	 * When on, draw() iterates with Complex objects the way it originally did,
+	 *   which is slow but handy for cross-checking the primitive engine.
+	 *   Only the Julia formula has a reference path; the others ignore this.
+	 * @param reference true to use the Complex based reference path
+	 */
+	public void setReferenceMode(boolean reference) {
+		this.reference = reference;
 	}
 	
 	/**
@@ -49,23 +237,21 @@ public class Julia {
 	}
 	
 	/**
-	 * Sets the complex coordinates based on the specified pixel location
+	 * Sets the complex coordinates based on the specified pixel location.
+	 *   The view becomes the box exactly.  The renderer takes over the pixels
+	 *   the two views share, which a box of an exact fraction or multiple of
+	 *   the width at a whole pixel has (see ComplexRaster.zoom); any other box
+	 *   is computed from scratch.
 	 * @param ul Upper-left corner in pixel coordinates of the zoom-to box
 	 * @param widthAndHeight length and width of the zoom-to box, in pixels
 	 */
 	public void zoomTo(Point ul, int widthAndHeight) {
 		pt = ul;
-		double wide = Math.abs(upL.getReal() - lowR.getReal());
-		upL = cr.getPoint(ul);
-		//System.out.println(uppL);
-		double perc = (widthAndHeight*1.0) / minh;
-		double nwide = wide * perc;
-		lowR = new Complex(upL.getReal() + nwide, upL.getImaginary() - nwide);
-		cr = new ComplexRaster(upL, lowR, minw, minw);
-		// next line was for debugging purposes, I was having issues with "wide" remaining at 4.0 so i moved that line to first and 
-		// made it reference uppL and lowR before they are changed instead of using ul and lr which i dont ever change.
-		//System.out.println (perc + " " + wide + " " + nwide + " " + minh + " " + widthAndHeight + " " + pt + " " + upL + " " + lowR);
-		draw();
+		boolean wasDeep = deep.getScale() < DEEP;
+		deep = deep.zoom(ul, widthAndHeight);
+		// after a deep view the doubles are no good and the corners come from the center
+		cr = wasDeep ? deep.toRaster() : cr.zoom(ul, widthAndHeight);
+		redraw();
 	}
 	
 	/**
@@ -79,16 +265,24 @@ public class Julia {
 	
 	/**
 	 * Zooms out, which counteracts a zoom in
-	 * could use some work still
-	 */
-	public void zoomOut() {		 
-		double dx = Math.abs(upL.getReal() - lowR.getReal());
-		double dy = Math.abs(upL.getImaginary() - lowR.getImaginary());
-		upL = new Complex(upL.getReal() - .5*dx, upL.getImaginary() + .5*dy);
-		lowR = new Complex(lowR.getReal() + .5*dx, lowR.getImaginary() - .5*dy);
-		cr = new ComplexRaster(upL, lowR, wandh*2, wandh*2);
-		draw();
-		
+	 */
+	public void zoomOut() {
+		// the exact inverse of zoomIn: the old view becomes the center quarter
+		int out = minw / 2;
+		zoomTo(new Point(-out, -out), minw * 2);
+	}
+	
+	/**
+	 * Set the maximum number of iterations and redraw.
+	 * @param maxIters iteration limit
+	 */
+	public void setMaxIterations(int maxIters) {
+		this.maxIters = maxIters;
+		redraw();
+	}
+	
+	public int getMaxIterations() {
+		return maxIters;
 	}
 	
 	/**
@@ -96,7 +290,7 @@ public class Julia {
 	 */
 	public void bump() {
 		maxIters += 50;
-		draw();
+		redraw();
 		//System.out.println("bump");
 	}
 	
@@ -105,11 +299,48 @@ public class Julia {
 	 */
 	public void unbump() {
 		maxIters -= 50;
-		draw();
+		redraw();
+	}
+
+	/**
+	 * @return true when the view is too deep for doubles and is rendered
+	 *   in double-double or by perturbation
+	 */
+	public boolean isDeep() {
+		// the deep renderers only know z*z + c; other formulas stay in doubles
+		return deep.getScale() < DEEP && isJuliaFormula();
+	}
+	
+	private boolean isJuliaFormula() {
+		return renderer.getFormula() instanceof JuliaFormula;
+	}
+	
+	/**
+	 * Zoom to a view given by its center, for instance one read back from a
+	 *   saved location, and redraw.
+	 * @param re real part of the center
+	 * @param im imaginary part of the center
+	 * @param scale distance between neighboring pixels
+	 */
+	public void center(BigDecimal re, BigDecimal im, double scale) {
+		deep = new DeepRaster(re, im, scale, minh, minw);
+		cr = deep.toRaster();
+		redraw();
+	}
+	
+	private boolean isReference() {
+		return reference && isJuliaFormula();
+	}
+	
+	/**
+	 * Reference escape-time loop, kept for setReferenceMode(true), and
+	 *   the baseline of the benchmarks.
+	 */
+	int rigor(Complex c, int maxIters) {
+		return rigor(c, new Complex(cRe, cIm), maxIters);
 	}
 
-	private int rigor(Complex c) {
-		Complex z = new Complex(-.7795, .134);
+	private int rigor(Complex c, Complex z, int maxIters) {
 		int iters = 0;
 		while ((c.abs() < 2) && (iters < maxIters)) {
 			c = c.times(c).plus(z);
@@ -119,21 +350,241 @@ public class Julia {
 	}
 
 	/**
-	 * Call this method to draw or redraw the Julia set
+	 * Call this method to draw or redraw the Julia set.  Does all the work
+	 *   on the calling thread and returns once the image is up to date.
 	 */
 	public void draw() {
 		//System.out.println("saldfja");
-		int iters;
-		for (int x = 0 ; x < minw ; x++) {
+		service.cancel();
+		int[] argb;
+		synchronized (this) {
+			Complex c = new Complex(cRe, cIm);
+			if (isDeep()) {
+				counts = renderDeep(deep, c, maxIters, null);
+				argb = color(counts, maxIters);
+			}
+			else {
+				IterationBuffer b = render(cr, c, renderer.getFormula().getName(), maxIters, null);
+				counts = b.getIterations();
+				argb = color(b, c, maxIters, 1, null);
+			}
+		}
+		image.setPixels(0, 0, minw, minh, argb, 0, minw);
+	}
+
+	/**
+	 * @return the iteration counts of the last draw(), for the benchmarks to count the work done
+	 */
+	synchronized int[] getCounts() {
+		return counts;
+	}
+
+	/**
+	 * Redraw the Julia set in the background.  A render that is still in
+	 *   progress is abandoned, since the view or iteration limit it was
+	 *   drawing is out of date.  The image is updated on the Swing event
+	 *   thread once the new render is finished.  The job draws the view,
+	 *   limit, constant and formula of the moment it is submitted; changing
+	 *   any of them submits another.
+	 * @return completes when the render has finished or been superseded
+	 */
+	public Future<?> redraw() {
+		final ComplexRaster view = cr;
+		final int limit = maxIters;
+		final Complex c = new Complex(cRe, cIm);
+		final String formula = renderer.getFormula().getName();
+		if (isDeep()) {
+			final DeepRaster d = deep;
+			return service.submit(new RenderService.Job() {
+				public void run(AtomicBoolean cancelled) {
+					synchronized (Julia.this) {
+						int[] argb = color(renderDeep(d, c, limit, cancelled), limit);
+						RenderService.publish(image, argb, 0, 0, minw, minh, cancelled);
+					}
+				}
+			});
+		}
+		return service.submit(new RenderService.Job() {
+			public void run(final AtomicBoolean cancelled) {
+				synchronized (Julia.this) {
+					final IterationBuffer b = renderer.getBuffer(view);
+					if (!progressive || isReference() || renderer.isSubdivide() || b.getLimit() > 0) {
+						int[] argb = color(render(view, c, formula, limit, cancelled), c, limit, 1, cancelled);
+						RenderService.publish(image, argb, 0, 0, minw, minh, cancelled);
+						return;
+					}
+					// a view nobody has iterated yet: show it coarse first, all but its cached tiles
+					String name = cacheName(b, formula);
+					cache.fill(b, name, c.getReal(), c.getImaginary(), limit);
+					renderer.renderProgressive(b, c.getReal(), c.getImaginary(), limit, new Point(minw/2, minh/2),
+							new TileRenderer.PassListener() {
+								public void passDone(int step) {
+									int[] argb = color(b, c, limit, step, cancelled);
+									RenderService.publish(image, argb, 0, 0, minw, minh, cancelled);
+								}
+							}, cancelled);
+					cache.store(b, name, c.getReal(), c.getImaginary(), limit);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Color the current iteration counts again without iterating anything,
+	 *   for instance after the colors have been changed.  Runs in the background like redraw().
+	 * @return completes when the image has been recolored or the work superseded
+	 */
+	public Future<?> recolor() {
+		if (isDeep()) {
+			// deep views keep no counts between frames
+			return redraw();
+		}
+		final ComplexRaster view = cr;
+		final int limit = maxIters;
+		final Complex c = new Complex(cRe, cIm);
+		final String formula = renderer.getFormula().getName();
+		return service.submit(new RenderService.Job() {
+			public void run(AtomicBoolean cancelled) {
+				synchronized (Julia.this) {
+					IterationBuffer b = renderer.getBuffer(view);
+					if (isReference() || limit > b.getLimit()) {
+						// the counts on hand are not good enough for this limit
+						int[] argb = color(render(view, c, formula, limit, cancelled), c, limit, 1, cancelled);
+						RenderService.publish(image, argb, 0, 0, minw, minh, cancelled);
+						return;
+					}
+					int[] argb = color(b, c, limit, 1, cancelled);
+					RenderService.publish(image, argb, 0, 0, minw, minh, cancelled);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Color the escaped pixels with a different palette and recolor.
+	 * @param palette the new colors
+	 */
+	public void setPalette(Palette palette) {
+		colors.setPalette(palette);
+		recolor();
+	}
+
+	/**
+	 * Color the pixels whose orbits end in a cycle by the length of the cycle.
+	 * @param interior palette indexed by cycle length, or null to draw them black
+	 */
+	public void setInteriorPalette(Palette interior) {
+		colors.setInteriorPalette(interior);
+		recolor();
+	}
+
+	/**
+	 * Rotate the colors of the escaped pixels and recolor.
+	 * @param amount how far to shift the colors, in iterations
+	 */
+	public void cycle(int amount) {
+		colors.setOffset(colors.getOffset() + amount);
+		recolor();
+	}
+
+	/**
+	 * Compute every pixel of a view.  Pixels that have not escaped by the
+	 *   end are kept, so a later render of the same view with a higher limit
+	 *   only does the extra iterations, and one with a lower limit does none.
+	 * @param view the viewport to render
+	 * @param c the constant
+	 * @param formula name of the renderer's formula, to cache the tiles under
+	 * @param limit iteration limit
+	 * @param cancelled checked between tiles, may be null
+	 * @return the iteration counts
+	 */
+	private IterationBuffer render(ComplexRaster view, Complex c, String formula, int limit, AtomicBoolean cancelled) {
+		if (isReference()) {
+			IterationBuffer b = new IterationBuffer(view);
+			int[] iterations = b.getIterations();
 			for (int y = 0 ; y < minh ; y++) {
-				iters = rigor(cr.getPoint(x, y));
-				Color color = Color.black;
-				if (iters < maxIters) {
-					color = Color.getHSBColor((iters%256)/255.0f, 1.0f, 1.0f);
+				if (cancelled != null && cancelled.get()) {
+					throw new CancellationException();
 				}
-				image.setPixel(x, y, color);
+				for (int x = 0 ; x < minw ; x++) {
+					iterations[y*minw + x] = rigor(view.getPoint(x, y), c, limit);
+				}
+			}
+			return b;
+		}
+		IterationBuffer b = renderer.getBuffer(view);
+		if (limit > b.getLimit()) {
+			// only the tiles not cached are iterated
+			String name = cacheName(b, formula);
+			cache.fill(b, name, c.getReal(), c.getImaginary(), limit);
+			renderer.render(b, c.getReal(), c.getImaginary(), limit, cancelled);
+			cache.store(b, name, c.getReal(), c.getImaginary(), limit);
+		}
+		// otherwise there is nothing new to iterate, the stored counts just get colored again
+		return b;
+	}
+	
+	/**
+	 * Cached tiles are only good for the formula and the engine that made
+	 *   them, since the float engine rounds differently.
+	 * @param formula name of the formula
+	 * @return the name to cache b's tiles under
+	 */
+	private String cacheName(IterationBuffer b, String formula) {
+		return formula + " " + renderer.engineFor(b).getName();
+	}
+
+	/**
+	 * Compute every pixel of a deep view, in double-double while it has
+	 *   the digits and by perturbation deeper down.  Nothing is kept
+	 *   between frames.
+	 * @param view the viewport to render
+	 * @param c the constant
+	 * @param limit iteration limit
+	 * @param cancelled checked between rows, may be null
+	 * @return the iteration counts
+	 */
+	private int[] renderDeep(DeepRaster view, Complex c, int limit, AtomicBoolean cancelled) {
+		int[] iterations = new int[minw*minh];
+		if (view.getScale() < DoubleDoubleRenderer.SMALLEST_SCALE) {
+			perturbation.render(view, c.getReal(), c.getImaginary(), limit, iterations, cancelled);
+		}
+		else {
+			doubleDouble.render(view, c.getReal(), c.getImaginary(), limit, iterations, cancelled);
+		}
+		return iterations;
+	}
+	
+	/**
+	 * Color a frame of counts that has no cycle lengths.
+	 */
+	private int[] color(int[] iterations, int limit) {
+		int[] argb = new int[minw*minh];
+		colors.apply(iterations, minw, minh, limit, 1, argb);
+		return argb;
+	}
+	
+	/**
+	 * Run the color pass over a frame of iteration counts, then smooth the
+	 *   edges of a full resolution frame when anti-aliasing is on.
+	 * @param b the counts and cycle lengths
+	 * @param c the constant b was rendered with
+	 * @param limit iteration limit being drawn
+	 * @param step spacing of the samples to use, see ColorPass.apply
+	 * @param cancelled checked while supersampling, may be null
+	 * @return ARGB colors, one row after another
+	 */
+	private int[] color(IterationBuffer b, Complex c, int limit, int step, AtomicBoolean cancelled) {
+		int[] argb = new int[minw*minh];
+		colors.apply(b.getIterations(), b.getPeriods(), minw, minh, limit, step, argb);
+		if (step == 1 && antialias > 1) {
+			// a new palette only shades the samples taken for the last frame again
+			if (b.samples == null || !b.samples.isFor(b, limit, antialias)) {
+				b.samples = supersampler.sample(b, c.getReal(), c.getImaginary(), limit, antialias, cancelled);
 			}
+			supersampler.shade(b.samples, colors, argb);
 		}
+		return argb;
 	}
 
 }
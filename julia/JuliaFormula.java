@@ -0,0 +1,34 @@
+package julia;
+
+/**
+ * The Julia set of z*z + c for the constant passed in, which is what the
+ *   engines compute.  TileRenderer hands this formula to its engines, so
+ *   it gets the vector and float fast paths; advance() here only runs for
+ *   callers that use the formula on its own.
+ * @author Ross Larson
+ *
+ */
+public final class JuliaFormula extends FractalFormula {
+
+	private ScalarEngine engine;
+
+	public JuliaFormula() {
+		super(true);
+		engine = new ScalarEngine();
+	}
+
+	public void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		engine.advance(b, start, count, stride, cRe, cIm, maxIters);
+	}
+
+	/**
+	 * (-z)*(-z) = z*z, so z and -z have the same orbit after one step.
+	 */
+	public boolean isPointSymmetric() {
+		return true;
+	}
+
+	public String getName() {
+		return "julia";
+	}
+}
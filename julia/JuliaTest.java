@@ -0,0 +1,137 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import javax.swing.SwingUtilities;
+
+import nip.Image;
+
+import org.junit.Test;
+
+
+public class JuliaTest {
+	
+	final private int size = 64;
+	
+	private int[] pixels(Image image) {
+		int[] p = new int[size*size];
+		for (int y = 0; y < size; ++y) {
+			for (int x = 0; x < size; ++x) {
+				p[y*size + x] = image.getPixel(x, y);
+			}
+		}
+		return p;
+	}
+	
+	private int[] drawn(Julia julia, Image image) {
+		julia.draw();
+		return pixels(image);
+	}
+	
+	private void flush() throws Exception {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+			}
+		});
+	}
+	
+	@Test
+	public void sameAsReference() {
+		Image image = new Image(size, size);
+		Julia julia = new Julia(image);
+		julia.reset();
+		int[] fast = drawn(julia, image);
+		julia.setReferenceMode(true);
+		assertArrayEquals(drawn(julia, image), fast);
+		julia.setReferenceMode(false);
+		julia.setRenderer(null);
+		assertArrayEquals(drawn(julia, image), fast);
+	}
+	
+	@Test
+	public void bumpAndUnbump() throws Exception {
+		Image image = new Image(size, size);
+		Julia julia = new Julia(image);
+		julia.reset();
+		julia.bump();
+		julia.bump();
+		julia.unbump();
+		julia.redraw().get();
+		flush();
+		int[] resumed = pixels(image);
+		julia.setReferenceMode(true);
+		assertArrayEquals(drawn(julia, image), resumed);
+	}
+	
+	@Test
+	public void forgetStartsOver() {
+		Image image = new Image(size, size);
+		Julia julia = new Julia(image);
+		julia.reset();
+		int[] first = drawn(julia, image);
+		julia.zoomIn();
+		julia.zoomOut();
+		julia.forget();
+		assertEquals(0, julia.getCache().size());
+		assertArrayEquals(first, drawn(julia, image));
+	}
+	
+	@Test
+	public void backgroundSameAsDraw() throws Exception {
+		Image image = new Image(size, size);
+		Julia julia = new Julia(image);
+		julia.reset();
+		julia.bump();
+		julia.redraw().get();
+		flush();
+		int[] background = pixels(image);
+		assertArrayEquals(drawn(julia, image), background);
+	}
+	
+	@Test
+	public void deepZoomAndBack() throws Exception {
+		Image image = new Image(size, size);
+		Julia julia = new Julia(image);
+		julia.reset();
+		int[] start = drawn(julia, image);
+		for (int n = 0; n < 45; ++n) {
+			julia.zoomIn();
+		}
+		assertTrue(julia.isDeep());
+		julia.redraw().get();
+		flush();
+		assertArrayEquals(drawn(julia, image), pixels(image));
+		for (int n = 0; n < 45; ++n) {
+			julia.zoomOut();
+		}
+		assertFalse(julia.isDeep());
+		assertArrayEquals(start, drawn(julia, image));
+	}
+	
+	@Test
+	public void switchFormula() throws Exception {
+		Image image = new Image(size, size);
+		Julia julia = new Julia(image);
+		julia.reset();
+		int[] before = drawn(julia, image);
+		assertTrue(julia.getRenderer().isSymmetry());
+		julia.setFormula(new MandelbrotFormula());
+		// only mirrored for formulas with point symmetry
+		assertFalse(julia.getRenderer().isSymmetry());
+		julia.redraw().get();
+		flush();
+		// the origin is inside the Mandelbrot set, the left edge is not
+		assertEquals(ColorPass.INTERIOR, image.getPixel(size/2, size/2));
+		assertTrue(image.getPixel(0, 0) != ColorPass.INTERIOR);
+		julia.setFormula(new JuliaFormula());
+		assertTrue(julia.getRenderer().isSymmetry());
+		assertArrayEquals(before, drawn(julia, image));
+		julia.setConstant(-1, .1);
+		int[] other = drawn(julia, image);
+		assertFalse(java.util.Arrays.equals(before, other));
+		julia.setFormula(new MandelbrotFormula());
+		julia.setFormula(new JuliaFormula(), -1, .1);
+		assertArrayEquals(other, drawn(julia, image));
+	}
+
+}
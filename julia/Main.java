@@ -4,6 +4,10 @@ package julia;
 import java.awt.Color;
 import java.awt.event.*;
 import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+
+import javax.swing.SwingUtilities;
 
 import nip.*;
 
@@ -124,7 +128,6 @@ public class Main extends Tool implements KeyListener, MouseListener, MouseMotio
 		if (name.equals("Julia")) {
 			julia = new Julia(nip.getTargetImage());
 			julia.reset();
-			julia.draw();
 			GraphicsPanel panel = nip.getTargetPanel();
 			
 			//these two lines are probably where my problem lies
@@ -146,10 +149,49 @@ public class Main extends Tool implements KeyListener, MouseListener, MouseMotio
 		if (name.equals("ZoomOut")) {
 			julia.zoomOut();
 		}
+		if (name.equals("Mandelbrot")) {
+			julia.setFormula(new MandelbrotFormula());
+		}
+		if (name.equals("Multibrot")) {
+			int power = Dialog.getInteger("Power n of z^n + c (2 or more)");
+			if (power >= 2) {
+				julia.setFormula(new MultibrotFormula(power, Dialog.getApproval("Julia set of the constant?")));
+			}
+		}
+		if (name.equals("BurningShip")) {
+			julia.setFormula(new BurningShipFormula(false));
+		}
+		if (name.equals("Tricorn")) {
+			julia.setFormula(new TricornFormula(false));
+		}
+		if (name.equals("Constant")) {
+			double re = Dialog.getDouble("Real part of c");
+			double im = Dialog.getDouble("Imaginary part of c");
+			julia.setFormula(new JuliaFormula(), re, im);
+		}
+		if (name.equals("Store")) {
+			String file = Dialog.getText("File to keep tiles in", "julia.tiles");
+			int megabytes = Dialog.getInteger("Megabytes it may grow to");
+			try {
+				julia.getCache().setStoreListener(new TileCache.StoreListener() {
+					public void storeFailed(final TileStore store, final IOException e) {
+						SwingUtilities.invokeLater(new Runnable() {
+							public void run() {
+								Dialog.showError("Tile store " + store + " failed, going on without it: " + e.getMessage());
+							}
+						});
+					}
+				});
+				julia.setStore(new TileStore(new File(file), (long) megabytes << 20));
+			} catch (IOException e) {
+				Dialog.showError("Cannot use " + file + " for tiles: " + e.getMessage());
+			}
+		}
 	}
 
 	public String[] getEventNames() {
-		return new String[] { "Julia", "Bump", "UnBump", "ZoomIn", "ZoomOut" };
+		return new String[] { "Julia", "Bump", "UnBump", "ZoomIn", "ZoomOut",
+				"Mandelbrot", "Multibrot", "BurningShip", "Tricorn", "Constant", "Store" };
 	}
 
 }
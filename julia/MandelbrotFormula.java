@@ -0,0 +1,62 @@
+package julia;
+
+/**
+ * The Mandelbrot set: z*z + c with c the pixel's coordinate.  Its large
+ *   interior would cost maxIters per pixel, so orbits are checked for
+ *   cycles the same way ScalarEngine does.  z starts at c rather than 0,
+ *   skipping the first step, so counts are one less than the usual ones;
+ *   see FractalFormula.
+ * @author Ross Larson
+ *
+ */
+public final class MandelbrotFormula extends FractalFormula {
+
+	private double epsilon;
+
+	public MandelbrotFormula() {
+		super(false);
+		epsilon = ScalarEngine.PERIOD_EPSILON;
+	}
+
+	public void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		int[] counts = b.iters, periods = b.period;
+		double[] zr = b.re, zi = b.im;
+		ComplexRaster cr = b.getRaster();
+		int width = b.getWidth();
+		for (int n = 0, i = start; n < count; n++, i += stride) {
+			int iters = counts[i];
+			double re = zr[i], im = zi[i];
+			if (iters >= maxIters || !(im*im + re*re < ScalarEngine.ESCAPE)) {
+				continue;
+			}
+			double a = cr.getReal(i % width), c = cr.getImaginary(i / width);
+			double savedRe = re, savedIm = im;
+			int steps = 0, window = 1;
+			while ((im*im + re*re < ScalarEngine.ESCAPE) && (iters < maxIters)) {
+				double t = re*re - im*im + a;
+				im = 2*re*im + c;
+				re = t;
+				iters++;
+				steps++;
+				if (Math.abs(re - savedRe) < epsilon && Math.abs(im - savedIm) < epsilon) {
+					periods[i] = steps;
+					iters = IterationBuffer.INTERIOR;
+					break;
+				}
+				if (steps == window) {
+					savedRe = re;
+					savedIm = im;
+					steps = 0;
+					window <<= 1;
+				}
+			}
+			counts[i] = iters;
+			zr[i] = re;
+			zi[i] = im;
+		}
+	}
+
+	public String getName() {
+		return "mandelbrot";
+	}
+}
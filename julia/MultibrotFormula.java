@@ -0,0 +1,67 @@
+package julia;
+
+/**
+ * z^n + c for a whole power n of 2 or more, as a Julia set or over the
+ *   parameter plane (a Multibrot set).  The power is raised by repeated
+ *   complex multiplication.
+ * @author Ross Larson
+ *
+ */
+public final class MultibrotFormula extends FractalFormula {
+
+	private int power;
+
+	/**
+	 * @param power n, at least 2
+	 * @param julia true for the Julia set of the constant, false for the parameter plane
+	 */
+	public MultibrotFormula(int power, boolean julia) {
+		super(julia);
+		if (power < 2) {
+			throw new IllegalArgumentException("power must be at least 2: " + power);
+		}
+		this.power = power;
+	}
+
+	public int getPower() {
+		return power;
+	}
+
+	public void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		int[] counts = b.iters;
+		double[] zr = b.re, zi = b.im;
+		ComplexRaster cr = b.getRaster();
+		int width = b.getWidth();
+		boolean julia = isJulia();
+		for (int n = 0, i = start; n < count; n++, i += stride) {
+			int iters = counts[i];
+			double re = zr[i], im = zi[i];
+			double a = julia ? cRe : cr.getReal(i % width), c = julia ? cIm : cr.getImaginary(i / width);
+			while ((im*im + re*re < ScalarEngine.ESCAPE) && (iters < maxIters)) {
+				double pr = re, pi = im;
+				for (int k = 1; k < power; k++) {
+					double t = pr*re - pi*im;
+					pi = pr*im + pi*re;
+					pr = t;
+				}
+				re = pr + a;
+				im = pi + c;
+				iters++;
+			}
+			counts[i] = iters;
+			zr[i] = re;
+			zi[i] = im;
+		}
+	}
+
+	/**
+	 * (-z)^n = z^n for even n.
+	 */
+	public boolean isPointSymmetric() {
+		return isJulia() && power % 2 == 0;
+	}
+
+	public String getName() {
+		return (isJulia() ? "julia" : "multibrot") + power;
+	}
+}
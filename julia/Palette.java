@@ -0,0 +1,60 @@
+package julia;
+
+/**
+ * Maps escaped iteration counts to colors through a lookup table of packed
+ *   ARGB ints.  The table is built the first time it is needed and again
+ *   only after the palette's definition changes, so coloring a pixel costs
+ *   a single array load.
+ * @author Ross Larson
+ *
+ */
+public abstract class Palette {
+
+	private int size;
+	private volatile int[] table;
+
+	/**
+	 * @param size number of entries in the table; counts wrap around after that many
+	 */
+	protected Palette(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("A palette needs at least one entry, not " + size);
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The lookup table: the color for count n is getTable()[n % size()].
+	 *   Callers must not change it.
+	 * @return the current table
+	 */
+	public int[] getTable() {
+		int[] t = table;
+		if (t == null) {
+			t = new int[size];
+			for (int i = 0; i < size; i++) {
+				t[i] = compute(i);
+			}
+			table = t;
+		}
+		return t;
+	}
+
+	/**
+	 * Color of one table entry, only called while the table is built.
+	 * @param index from 0 to size()-1
+	 * @return packed ARGB color
+	 */
+	protected abstract int compute(int index);
+
+	/**
+	 * Subclasses call this whenever their definition changes, so the
+	 *   table gets built again the next time it is needed.
+	 */
+	protected void changed() {
+		table = null;
+	}
+}
@@ -0,0 +1,48 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+
+public class PaletteTest {
+	
+	@Test
+	public void hueMatchesOriginalColors() {
+		int[] table = new HuePalette().getTable();
+		assertEquals(256, table.length);
+		for (int i = 0; i < 256; ++i) {
+			assertEquals(Color.getHSBColor(i/255.0f, 1.0f, 1.0f).getRGB(), table[i]);
+		}
+	}
+	
+	@Test
+	public void tableIsBuiltOnce() {
+		Palette p = new HuePalette(64);
+		assertSame(p.getTable(), p.getTable());
+	}
+	
+	@Test
+	public void gradient() {
+		GradientPalette p = new GradientPalette(4, Color.black, Color.white);
+		int[] table = p.getTable();
+		assertEquals(Color.black.getRGB(), table[0]);
+		assertEquals(new Color(128, 128, 128).getRGB(), table[1]);
+		assertEquals(Color.white.getRGB(), table[2]);
+		p.setStops(Color.red);
+		assertNotSame(table, p.getTable());
+		assertEquals(Color.red.getRGB(), p.getTable()[3]);
+	}
+	
+	@Test
+	public void cycling() {
+		ColorPass colors = new ColorPass(null);
+		colors.setPalette(new GradientPalette(3, Color.red, Color.green, Color.blue));
+		colors.setOffset(-1);
+		assertEquals(Color.blue.getRGB(), colors.color(0, 10));
+		assertEquals(Color.red.getRGB(), colors.color(1, 10));
+	}
+
+}
@@ -0,0 +1,108 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+
+public class PerturbationRendererTest {
+
+	final private double cRe = -.7795, cIm = .134;
+	final private MathContext mc = new MathContext(60);
+
+	@Test
+	public void shallowSameAsDouble() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 64, 64);
+		int[] expected = new int[64*64];
+		new TileRenderer(2).render(cr, cRe, cIm, 300, expected);
+		int[] actual = new int[64*64];
+		new PerturbationRenderer(null).render(DeepRaster.of(cr), cRe, cIm, 300, actual, null);
+		int same = 0;
+		for (int i = 0; i < expected.length; ++i) {
+			if (expected[i] == actual[i]) {
+				same++;
+			}
+		}
+		assertTrue(same > expected.length * 99 / 100);
+	}
+
+	/**
+	 * The same count the slow way: every pixel iterated with 60 digits.
+	 */
+	private int direct(BigDecimal re, BigDecimal im, int maxIters) {
+		BigDecimal r = new BigDecimal(cRe), i = new BigDecimal(cIm);
+		int iters = 0;
+		while (iters < maxIters) {
+			double x = re.doubleValue(), y = im.doubleValue();
+			if (!(x*x + y*y < ScalarEngine.ESCAPE)) {
+				break;
+			}
+			BigDecimal t = re.multiply(re, mc).subtract(im.multiply(im, mc), mc).add(r, mc);
+			im = re.multiply(im, mc).multiply(BigDecimal.valueOf(2), mc).add(i, mc);
+			re = t;
+			iters++;
+		}
+		return iters;
+	}
+
+	/**
+	 * The repelling fixed point (1 + sqrt(1 - 4c)) / 2, which lies on the Julia set.
+	 * @return its real and imaginary parts
+	 */
+	static BigDecimal[] fixedPoint(double cRe, double cIm, MathContext mc) {
+		BigDecimal ar = BigDecimal.ONE.subtract(new BigDecimal(cRe).multiply(BigDecimal.valueOf(4)));
+		BigDecimal ai = new BigDecimal(cIm).multiply(BigDecimal.valueOf(-4));
+		BigDecimal abs = ar.multiply(ar).add(ai.multiply(ai)).sqrt(mc);
+		BigDecimal two = BigDecimal.valueOf(2);
+		BigDecimal sr = abs.add(ar).divide(two, mc).sqrt(mc);
+		BigDecimal si = abs.subtract(ar).divide(two, mc).sqrt(mc);
+		if (ai.signum() < 0) {
+			si = si.negate();
+		}
+		return new BigDecimal[] { BigDecimal.ONE.add(sr).divide(two, mc), si.divide(two, mc) };
+	}
+
+	@Test
+	public void deepSameAsBigDecimal() {
+		BigDecimal[] fixed = fixedPoint(cRe, cIm, mc);
+		BigDecimal re = fixed[0], im = fixed[1];
+		// a view 1e-30 across, a little off the fixed point
+		DeepRaster view = new DeepRaster(re.add(new BigDecimal("3e-31")), im, 1e-32, 40, 40);
+		assertEquals(0, view.getCenterReal().subtract(re).compareTo(new BigDecimal("3e-31")));
+		int[] out = new int[40*40];
+		new PerturbationRenderer(new java.util.concurrent.ForkJoinPool(2)).render(view, cRe, cIm, 500, out, null);
+		Set<Integer> counts = new HashSet<Integer>();
+		for (int y = 0; y < 40; y += 5) {
+			for (int x = 0; x < 40; x += 5) {
+				BigDecimal pr = view.getCenterReal().add(new BigDecimal(view.getOffsetReal(x)), mc);
+				BigDecimal pi = view.getCenterImaginary().add(new BigDecimal(view.getOffsetImaginary(y)), mc);
+				assertEquals(direct(pr, pi, 500), out[y*40 + x]);
+				counts.add(out[y*40 + x]);
+			}
+		}
+		// not one flat block
+		assertTrue(counts.size() > 5);
+	}
+
+	@Test
+	public void zoomKeepsDigits() {
+		DeepRaster view = DeepRaster.of(new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 64, 64));
+		for (int n = 0; n < 60; ++n) {
+			view = view.zoom(new java.awt.Point(16, 16), 32);
+		}
+		assertEquals(4.0 / 63 / Math.pow(2, 60), view.getScale(), 1e-30);
+		assertTrue(view.getMathContext().getPrecision() > 25);
+		// each step moved the center by a different amount, none of it lost
+		DeepRaster back = view;
+		for (int n = 0; n < 60; ++n) {
+			back = back.zoom(new java.awt.Point(-32, -32), 128);
+		}
+		assertEquals(0, back.getCenterReal().doubleValue(), 1e-12);
+		assertEquals(0, back.getCenterImaginary().doubleValue(), 1e-12);
+	}
+}
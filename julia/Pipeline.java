@@ -0,0 +1,167 @@
+package julia;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands items from the thread that makes them to a Stage on a thread of its
+ *   own, through a queue a few items deep, so that making one item overlaps
+ *   coloring or writing the ones before it.  Used for the strips of a
+ *   StripRenderer and the frames of a ZoomAnimation and a ConstantSweep.
+ *   <p>
+ *   The items can be buffers from a ring: the stage gives each one back
+ *   once it is done with it, and free() waits for one, so memory stays at
+ *   the size of the ring however many items go through.
+ *   <p>
+ *   Whatever the stage throws stops its thread.  The producer never waits
+ *   on it for good: free() and put() wait a little at a time, and throw
+ *   the stage's failure at their next call, as does finish().  An
+ *   IOException or anything unchecked is thrown as it is.
+ * @author Ross Larson
+ *
+ * @param <T> the items
+ */
+public class Pipeline<T> {
+
+	/**
+	 * Milliseconds the producer waits between looks at whether the stage has failed
+	 */
+	private static final long POLL = 100;
+
+	/**
+	 * Takes the items in order, on the pipeline's thread.
+	 */
+	public interface Stage<T> {
+		/**
+		 * @param n number of the item, from 0
+		 * @param item the item; a buffer from the ring goes back to it after the call
+		 */
+		void take(int n, T item) throws IOException;
+	}
+
+	private final BlockingQueue<T> full, free;
+	private final AtomicReference<Throwable> failed = new AtomicReference<Throwable>();
+	private final Thread thread;
+
+	/**
+	 * Start a pipeline whose items are buffers from a ring.
+	 * @param name of the thread
+	 * @param ring the buffers, at least 2 so the two sides overlap
+	 * @param count number of items that will be put
+	 * @param stage takes them
+	 */
+	public Pipeline(String name, List<T> ring, int count, Stage<T> stage) {
+		this(name, ring.size(), ring, count, stage);
+	}
+
+	/**
+	 * Start a pipeline whose items are new every time.
+	 * @param name of the thread
+	 * @param depth number of items put but not yet taken before put() waits
+	 * @param count number of items that will be put
+	 * @param stage takes them
+	 */
+	public Pipeline(String name, int depth, int count, Stage<T> stage) {
+		this(name, depth, null, count, stage);
+	}
+
+	private Pipeline(String name, int depth, List<T> ring, final int count, final Stage<T> stage) {
+		full = new ArrayBlockingQueue<T>(depth);
+		free = ring == null ? null : new ArrayBlockingQueue<T>(depth, false, ring);
+		thread = new Thread(name) {
+			public void run() {
+				try {
+					for (int n = 0; n < count; n++) {
+						T item = full.take();
+						stage.take(n, item);
+						if (free != null) {
+							free.add(item);
+						}
+					}
+				} catch (InterruptedException e) {
+					// the producer gave up
+				} catch (Throwable e) {
+					// the producer finds this at its next call and stops, rather than wait for the stage
+					failed.set(e);
+				}
+			}
+		};
+		thread.start();
+	}
+
+	/**
+	 * @return a buffer of the ring that the stage is done with
+	 * @throws IOException what the stage threw, if it failed, or if the thread is interrupted
+	 */
+	public T free() throws IOException {
+		try {
+			T item;
+			do {
+				rethrow(failed.get());
+			} while ((item = free.poll(POLL, TimeUnit.MILLISECONDS)) == null);
+			return item;
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting for " + thread.getName());
+		}
+	}
+
+	/**
+	 * Hand the next item to the stage.
+	 * @throws IOException what the stage threw, if it failed, or if the thread is interrupted
+	 */
+	public void put(T item) throws IOException {
+		try {
+			do {
+				rethrow(failed.get());
+			} while (!full.offer(item, POLL, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting for " + thread.getName());
+		}
+	}
+
+	/**
+	 * Wait for the stage to take every item.
+	 * @throws IOException what the stage threw, if it failed, or if the thread is interrupted
+	 */
+	public void finish() throws IOException {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting for " + thread.getName());
+		}
+		rethrow(failed.get());
+	}
+
+	/**
+	 * Stop the stage's thread if it is still waiting for items.  Called in a
+	 *   finally block, so a producer that gives up does not leave it behind.
+	 */
+	public void stop() {
+		thread.interrupt();
+	}
+
+	/**
+	 * Throw what a stage threw, as it was thrown if it can be.
+	 * @param e what the stage threw, or null
+	 * @throws IOException if e is one, or a checked exception other than one
+	 */
+	static void rethrow(Throwable e) throws IOException {
+		if (e instanceof IOException) {
+			throw (IOException) e;
+		}
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		if (e != null) {
+			throw new IOException(e);
+		}
+	}
+}
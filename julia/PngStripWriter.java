@@ -0,0 +1,138 @@
+package julia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a PNG a few rows at a time, so a picture far too big for memory
+ *   can be encoded while it is being rendered.  Rows are compressed as
+ *   they come and written out in IDAT chunks of CHUNK bytes, so the writer
+ *   holds one row and one chunk whatever the size of the picture.  The
+ *   pixels are stored as 8 bit RGB; alpha is dropped.  Each row is
+ *   filtered with the Sub filter, which suits the long runs of one color
+ *   fractals have.
+ * @author Ross Larson
+ *
+ */
+public class PngStripWriter {
+
+	/**
+	 * Most compressed bytes written in one IDAT chunk
+	 */
+	private static final int CHUNK = 1 << 16;
+
+	private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+
+	private OutputStream out;
+	private int width, height, rows;
+	private Deflater deflater;
+	private byte[] row, chunk;
+	private int used;
+
+	/**
+	 * Write the PNG header.
+	 * @param out where the PNG goes; not closed by finish()
+	 * @param width of the picture in pixels
+	 * @param height of the picture in pixels
+	 * @throws IOException if out cannot be written
+	 */
+	public PngStripWriter(OutputStream out, int width, int height) throws IOException {
+		this.out = out;
+		this.width = width;
+		this.height = height;
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		row = new byte[1 + 3*width];
+		chunk = new byte[CHUNK];
+		out.write(SIGNATURE);
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8;	// bits per sample
+		header[9] = 2;	// RGB
+		// compression, filtering and interlace methods are all 0
+		writeChunk("IHDR", header, header.length);
+	}
+
+	/**
+	 * Add the next rows of the picture.
+	 * @param argb the pixels, one row after another, starting at index 0
+	 * @param count number of rows to take from argb
+	 * @throws IOException if out cannot be written
+	 * @throws IllegalStateException if that would be more rows than the picture has
+	 */
+	public void write(int[] argb, int count) throws IOException {
+		if (rows + count > height)
+			throw new IllegalStateException("The picture has only " + height + " rows");
+		for (int y = 0; y < count; y++) {
+			row[0] = 1;	// Sub: each byte less the same byte of the pixel to its left
+			int left = 0;
+			for (int x = 0, i = y*width; x < width; x++, i++) {
+				int p = argb[i];
+				row[1 + 3*x] = (byte) ((p >> 16) - (left >> 16));
+				row[2 + 3*x] = (byte) ((p >> 8) - (left >> 8));
+				row[3 + 3*x] = (byte) (p - left);
+				left = p;
+			}
+			deflater.setInput(row);
+			while (!deflater.needsInput()) {
+				deflate();
+			}
+		}
+		rows += count;
+	}
+
+	/**
+	 * Write the rest of the compressed data and the end of the PNG.
+	 * @throws IOException if out cannot be written
+	 * @throws IllegalStateException if not every row has been written
+	 */
+	public void finish() throws IOException {
+		if (rows != height)
+			throw new IllegalStateException("Only " + rows + " of " + height + " rows written");
+		deflater.finish();
+		while (!deflater.finished()) {
+			deflate();
+		}
+		if (used > 0) {
+			writeChunk("IDAT", chunk, used);
+		}
+		deflater.end();
+		writeChunk("IEND", chunk, 0);
+		out.flush();
+	}
+
+	/**
+	 * Compress into the chunk buffer, writing it out when it is full.
+	 */
+	private void deflate() throws IOException {
+		used += deflater.deflate(chunk, used, CHUNK - used);
+		if (used == CHUNK) {
+			writeChunk("IDAT", chunk, used);
+			used = 0;
+		}
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] b = new byte[8];
+		putInt(b, 0, length);
+		for (int i = 0; i < 4; i++) {
+			b[4 + i] = (byte) type.charAt(i);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(b, 4, 4);
+		crc.update(data, 0, length);
+		out.write(b);
+		out.write(data, 0, length);
+		putInt(b, 0, (int) crc.getValue());
+		out.write(b, 0, 4);
+	}
+
+	private static void putInt(byte[] b, int at, int value) {
+		b[at] = (byte) (value >>> 24);
+		b[at + 1] = (byte) (value >>> 16);
+		b[at + 2] = (byte) (value >>> 8);
+		b[at + 3] = (byte) value;
+	}
+}
@@ -0,0 +1,120 @@
+package julia;
+
+/**
+ * Pairs up the pixels of a ComplexRaster that are each other's mirror image
+ *   through the origin.  The Julia set of z*z + c is unchanged by z -> -z,
+ *   because (-z)*(-z) = z*z, so after the first step the orbits of z and -z
+ *   are the same and so are their counts.  When the raster's grid is
+ *   symmetric about 0, pixel (x, y) sits at minus the coordinate of pixel
+ *   (k - x, m - y), and only one pixel of each pair needs to be iterated.
+ *   <p>
+ *   For every row this marks one run of "copy" pixels whose mirror lies in
+ *   the raster and comes earlier in row-by-row order.  Those are skipped
+ *   when rendering and filled in from their mirror afterwards.  The mirror
+ *   coordinate matches to within rounding, not bit for bit, so in rare
+ *   chaotic pixels right on the edge of the set the copied count can differ
+ *   from the one a direct computation would give.
+ * @author Ross Larson
+ *
+ */
+public class PointSymmetry {
+
+	/**
+	 * How far, in pixels, the mirror grid may be from the raster's grid
+	 */
+	private static final double TOLERANCE = 1e-6;
+
+	private int k, m, width, height;
+
+	private PointSymmetry(int k, int m, int width, int height) {
+		this.k = k;
+		this.m = m;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * @param cr a viewport
+	 * @return the pairing for cr, or null when the mirror image of its grid
+	 *   does not land on its grid or does not overlap it at all
+	 */
+	public static PointSymmetry of(ComplexRaster cr) {
+		double k = -2*cr.getReal(0) / cr.getPixelWidth();
+		double m = 2*cr.getImaginary(0) / cr.getPixelHeight();
+		long rk = Math.round(k), rm = Math.round(m);
+		if (Math.abs(k - rk) > TOLERANCE || Math.abs(m - rm) > TOLERANCE) {
+			return null;
+		}
+		int w = cr.getWidth(), h = cr.getHeight();
+		if (rk < 0 || rk > 2*(w-1) || rm < 0 || rm > 2*(h-1)) {
+			return null;
+		}
+		return new PointSymmetry((int) rk, (int) rm, w, h);
+	}
+
+	/**
+	 * @return first copy pixel of row y; greater than last(y) when there is none
+	 */
+	public int first(int y) {
+		int my = m - y;
+		if (my < 0 || my >= height || my > y) {
+			return width;
+		}
+		int lo = Math.max(0, k - width + 1);
+		if (my == y) {
+			// the middle row mirrors onto itself: copy the right half of the overlap
+			lo = Math.max(lo, k/2 + 1);
+		}
+		return lo;
+	}
+
+	/**
+	 * @return last copy pixel of row y
+	 */
+	public int last(int y) {
+		return Math.min(width - 1, k);
+	}
+
+	/**
+	 * @return true when every pixel of the rectangle is a copy pixel
+	 */
+	public boolean covers(int x, int y, int w, int h) {
+		for (int j = y; j < y + h; j++) {
+			if (first(j) > x || last(j) < x + w - 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Give every copy pixel the state of its mirror.  Once a pixel has been
+	 *   iterated its orbit is the same as its mirror's.  Pixels whose mirror
+	 *   escaped before the first step are left alone: they lie on the radius 2
+	 *   circle or outside it, where rounding alone can decide between 0 and
+	 *   1 iterations, and computing them costs next to nothing.
+	 * @param b a buffer whose raster this pairing was made for
+	 * @return how many pixels were left alone
+	 */
+	public int copy(IterationBuffer b) {
+		int left = 0;
+		for (int y = 0; y < height; y++) {
+			int my = m - y;
+			for (int x = first(y); x <= last(y); x++) {
+				int p = y*width + x, q = my*width + k - x;
+				if (b.iters[q] == 0 && !b.filled[q]) {
+					left++;
+					continue;
+				}
+				b.iters[p] = b.iters[q];
+				b.period[p] = b.period[q];
+				b.filled[p] = b.filled[q];
+				if (b.iters[q] > 0) {
+					b.re[p] = b.re[q];
+					b.im[p] = b.im[q];
+				}
+			}
+		}
+		return left;
+	}
+}
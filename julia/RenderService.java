@@ -0,0 +1,104 @@
+package julia;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import nip.Image;
+
+/**
+ * Runs renders on a background thread so the Swing event thread never waits
+ *   for the fractal math.  Only the newest render matters: submitting a job
+ *   cancels the one before it, whether it is still queued or already running,
+ *   and a cancelled job never touches the image.
+ * @author Ross Larson
+ *
+ */
+public class RenderService {
+
+	/**
+	 * A unit of background work.  Long jobs should check the flag now and then
+	 *   and give up (by returning or throwing CancellationException) once it is set.
+	 */
+	public interface Job {
+		void run(AtomicBoolean cancelled);
+	}
+
+	private ExecutorService executor;
+	private Future<?> current;
+	private AtomicBoolean cancelled;
+
+	public RenderService() {
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "julia-render");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		cancelled = new AtomicBoolean();
+	}
+
+	/**
+	 * Cancel whatever is queued or running and schedule job in its place.
+	 * @param job the new render
+	 * @return completes when the job has finished or given up
+	 */
+	public synchronized Future<?> submit(final Job job) {
+		cancel();
+		final AtomicBoolean flag = new AtomicBoolean();
+		cancelled = flag;
+		current = executor.submit(new Runnable() {
+			public void run() {
+				if (flag.get()) {
+					return;
+				}
+				try {
+					job.run(flag);
+				} catch (CancellationException e) {
+					// superseded by a newer job
+				}
+			}
+		});
+		return current;
+	}
+
+	/**
+	 * Cancel the queued or running job, if any.
+	 */
+	public synchronized void cancel() {
+		cancelled.set(true);
+		if (current != null) {
+			current.cancel(false);
+		}
+	}
+
+	/**
+	 * Copy finished pixels into the image on the event thread, then repaint it.
+	 *   Nothing is copied if the job that produced them has been cancelled in the meantime.
+	 * @param image destination
+	 * @param argb pixels, one row after another, width*height of them
+	 * @param x left edge of the block in the image
+	 * @param y top edge of the block in the image
+	 * @param width in pixels
+	 * @param height in pixels
+	 * @param cancelled the flag of the job that produced the pixels
+	 */
+	public static void publish(final Image image, final int[] argb, final int x, final int y,
+			final int width, final int height, final AtomicBoolean cancelled) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (cancelled.get()) {
+					return;
+				}
+				image.setPixels(x, y, width, height, argb, 0, width);
+				image.repaint();
+			}
+		});
+	}
+}
@@ -0,0 +1,72 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+
+public class RenderServiceTest {
+	
+	RenderService service = new RenderService();
+	
+	@Test
+	public void newerJobCancelsOlder() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean sawCancel = new AtomicBoolean();
+		Future<?> first = service.submit(new RenderService.Job() {
+			public void run(AtomicBoolean cancelled) {
+				started.countDown();
+				while (!cancelled.get()) {
+					Thread.yield();
+				}
+				sawCancel.set(true);
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		final AtomicBoolean ran = new AtomicBoolean();
+		Future<?> second = service.submit(new RenderService.Job() {
+			public void run(AtomicBoolean cancelled) {
+				ran.set(true);
+			}
+		});
+		second.get(5, TimeUnit.SECONDS);
+		assertTrue(first.isDone());
+		assertTrue(sawCancel.get());
+		assertTrue(ran.get());
+	}
+	
+	@Test
+	public void queuedJobNeverRuns() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+		service.submit(new RenderService.Job() {
+			public void run(AtomicBoolean cancelled) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		// otherwise the next job could replace this one before it starts, and run
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		final AtomicBoolean ran = new AtomicBoolean();
+		service.submit(new RenderService.Job() {
+			public void run(AtomicBoolean cancelled) {
+				ran.set(true);
+			}
+		});
+		Future<?> last = service.submit(new RenderService.Job() {
+			public void run(AtomicBoolean cancelled) {
+			}
+		});
+		release.countDown();
+		last.get(5, TimeUnit.SECONDS);
+		assertFalse(ran.get());
+	}
+
+}
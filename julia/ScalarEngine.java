@@ -0,0 +1,130 @@
+package julia;
+
+/**
+ * Escape-time kernel for z*z + c that works on plain doubles.
+ *   It does the same arithmetic, in the same order, as iterating with
+ *   Complex.times, Complex.plus and Complex.abs, so it gives the same
+ *   iteration counts, but it never allocates and never takes a square root.
+ * @author Ross Larson
+ *
+ */
+public class ScalarEngine implements Engine {
+
+	/**
+	 * Squared magnitudes below this are still inside the radius 2 circle.
+	 *   Math.sqrt is correctly rounded and sqrt(4) is 2, so s &lt; 4 exactly
+	 *   when Math.sqrt(s) &lt; 2, and the counts agree with abs() &lt; 2.
+	 */
+	static final double ESCAPE = 4.0;
+
+	/**
+	 * Default distance within which an orbit counts as having come back to an earlier point
+	 */
+	public static final double PERIOD_EPSILON = 1e-12;
+
+	private double epsilon;
+
+	/**
+	 * An engine that checks orbits for cycles with the default epsilon.
+	 */
+	public ScalarEngine() {
+		this(PERIOD_EPSILON);
+	}
+
+	/**
+	 * @param epsilon how close, in both real and imaginary parts, an orbit must
+	 *   come back to an earlier point to count as a cycle; 0 turns cycle checking off
+	 */
+	public ScalarEngine(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Iterate z = z*z + c starting from z until it escapes or maxIters is reached
+	 * @param re real part of the starting z
+	 * @param im imaginary part of the starting z
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param maxIters iteration limit
+	 * @return number of iterations done before z escaped, or maxIters
+	 */
+	public int iterate(double re, double im, double cRe, double cIm, int maxIters) {
+		int iters = 0;
+		while ((im*im + re*re < ESCAPE) && (iters < maxIters)) {
+			double t = re*re - im*im + cRe;
+			im = re*im + im*re + cIm;
+			re = t;
+			iters++;
+		}
+		return iters;
+	}
+
+	/**
+	 * Iterate every pixel of one row of the raster, left to right.
+	 * @param cr maps pixels to starting values of z
+	 * @param y the row to compute
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param maxIters iteration limit
+	 * @param out receives the iteration counts of the row
+	 * @param offset index in out of the first pixel of the row
+	 */
+	public void iterateRow(ComplexRaster cr, int y, double cRe, double cIm, int maxIters, int[] out, int offset) {
+		iterateSpan(cr, y, 0, cr.getWidth(), cRe, cIm, maxIters, out, offset);
+	}
+
+	/**
+	 * Iterate the pixels x0 (inclusive) to x1 (exclusive) of one row.
+	 *   The count for pixel x goes to out[offset + x].
+	 */
+	public void iterateSpan(ComplexRaster cr, int y, int x0, int x1, double cRe, double cIm, int maxIters, int[] out, int offset) {
+		double im = cr.getImaginary(y);
+		for (int x = x0; x < x1; x++) {
+			out[offset + x] = iterate(cr.getReal(x), im, cRe, cIm, maxIters);
+		}
+	}
+
+	/**
+	 * Cycles are found Brent's way: the orbit is compared against a saved
+	 *   point, which is moved up to the current point after 1, 2, 4, 8, ...
+	 *   steps, so a cycle of any length is caught within a few times its length.
+	 */
+	public void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		int[] counts = b.iters, periods = b.period;
+		double[] zr = b.re, zi = b.im;
+		for (int n = 0, i = start; n < count; n++, i += stride) {
+			int iters = counts[i];
+			double re = zr[i], im = zi[i];
+			if (iters >= maxIters || !(im*im + re*re < ESCAPE)) {
+				continue;
+			}
+			double savedRe = re, savedIm = im;
+			int steps = 0, window = 1;
+			while ((im*im + re*re < ESCAPE) && (iters < maxIters)) {
+				double t = re*re - im*im + cRe;
+				im = re*im + im*re + cIm;
+				re = t;
+				iters++;
+				steps++;
+				if (Math.abs(re - savedRe) < epsilon && Math.abs(im - savedIm) < epsilon) {
+					periods[i] = steps;
+					iters = IterationBuffer.INTERIOR;
+					break;
+				}
+				if (steps == window) {
+					savedRe = re;
+					savedIm = im;
+					steps = 0;
+					window <<= 1;
+				}
+			}
+			counts[i] = iters;
+			zr[i] = re;
+			zi[i] = im;
+		}
+	}
+
+	public String getName() {
+		return "scalar";
+	}
+}
@@ -0,0 +1,53 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class ScalarEngineTest {
+	
+	final private int size = 128;
+	final private Complex c = new Complex(-.7795, .134);
+	ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), size, size);
+	ScalarEngine engine = new ScalarEngine();
+	
+	private int reference(Complex z, int maxIters) {
+		int iters = 0;
+		while ((z.abs() < 2) && (iters < maxIters)) {
+			z = z.times(z).plus(c);
+			iters++;
+		}
+		return iters;
+	}
+	
+	@Test
+	public void sameAsComplex() {
+		int[] row = new int[size];
+		for (int maxIters : new int[] { 1, 100, 350 }) {
+			for (int y = 0; y < size; ++y) {
+				engine.iterateRow(cr, y, c.getReal(), c.getImaginary(), maxIters, row, 0);
+				for (int x = 0; x < size; ++x) {
+					assertEquals(reference(cr.getPoint(x, y), maxIters), row[x]);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void escapeBoundary() {
+		assertEquals(0, engine.iterate(2, 0, 0, 0, 10));
+		assertEquals(10, engine.iterate(0, 0, 0, 0, 10));
+	}
+	
+	@Test
+	public void justInsideTheCircle() {
+		// squared magnitude nextDown(4), whose square root is still below 2
+		double re = Math.nextDown(2.0), im = 1.5e-8;
+		assertEquals(Math.nextDown(4.0), im*im + re*re, 0);
+		assertTrue(new Complex(re, im).abs() < 2);
+		// so the Complex loop takes one step, to about 4, and stops there
+		assertEquals(1, engine.iterate(re, im, 0, 0, 10));
+	}
+
+}
@@ -0,0 +1,82 @@
+package julia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders views too big to hold in memory, such as 50000 by 50000 pixels
+ *   for a print, straight into a PNG.  The view is computed ROWS rows at a
+ *   time on the tile renderer, colored, and handed to an encoder thread
+ *   that writes it with a PngStripWriter while the next strips are being
+ *   computed.  The colored strips go round a ring of a few buffers: the
+ *   renderer waits for a free one when the encoder falls behind, so
+ *   memory depends on the width of the view and the size of the ring,
+ *   never on the height.
+ * @author Ross Larson
+ *
+ */
+public class StripRenderer {
+
+	/**
+	 * Rows per strip, one row of tiles
+	 */
+	public static final int ROWS = TileRenderer.TILE;
+
+	private TileRenderer renderer;
+	private ColorPass colors;
+	private int ring;
+
+	/**
+	 * @param renderer computes each strip, with its formula
+	 * @param colors colors each strip
+	 * @param ring number of strip buffers, 2 or more so rendering and encoding overlap
+	 */
+	public StripRenderer(TileRenderer renderer, ColorPass colors, int ring) {
+		this.renderer = renderer;
+		this.colors = colors;
+		this.ring = Math.max(2, ring);
+	}
+
+	/**
+	 * Render a whole view and write it to out as a PNG.
+	 * @param view the viewport; only its rows, not its pixels, are ever allocated
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param maxIters iteration limit
+	 * @param out where the PNG goes; left open
+	 * @throws IOException if out cannot be written, or the thread is interrupted;
+	 *   anything else the encoder throws is thrown as it is, once the rendering has stopped
+	 */
+	public void render(ComplexRaster view, double cRe, double cIm, final int maxIters, OutputStream out)
+			throws IOException {
+		final int width = view.getWidth(), height = view.getHeight();
+		final PngStripWriter png = new PngStripWriter(out, width, height);
+		List<int[]> buffers = new ArrayList<int[]>();
+		for (int i = 0; i < ring; i++) {
+			buffers.add(new int[width*ROWS]);
+		}
+		Pipeline<int[]> encoder = new Pipeline<int[]>("strip encoder", buffers, (height + ROWS - 1) / ROWS,
+				new Pipeline.Stage<int[]>() {
+					public void take(int n, int[] strip) throws IOException {
+						png.write(strip, Math.min(ROWS, height - n*ROWS));
+					}
+				});
+		try {
+			for (int y = 0; y < height; y += ROWS) {
+				int rows = Math.min(ROWS, height - y);
+				IterationBuffer b = new IterationBuffer(view.strip(y, rows));
+				renderer.render(b, cRe, cIm, maxIters, null);
+				int[] argb = encoder.free();
+				colors.apply(b.getIterations(), b.getPeriods(), width, rows, maxIters, 1, argb);
+				encoder.put(argb);
+			}
+			encoder.finish();
+		} finally {
+			// only does anything when the renderer did not get to the end
+			encoder.stop();
+		}
+		png.finish();
+	}
+}
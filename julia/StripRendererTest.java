@@ -0,0 +1,92 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+
+public class StripRendererTest {
+
+	final private double cRe = -.7795, cIm = .134;
+
+	@Test
+	public void sameAsWholeFrame() throws IOException {
+		// 65 rows: two whole strips and one of a single row
+		ComplexRaster view = new ComplexRaster(new Complex(-2, 1.5), new Complex(2, -1.5), 65, 100);
+		TileRenderer renderer = new TileRenderer(2);
+		ColorPass colors = new ColorPass(renderer.getPool());
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		new StripRenderer(renderer, colors, 2).render(view, cRe, cIm, 200, png);
+		BufferedImage read = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+		assertEquals(100, read.getWidth());
+		assertEquals(65, read.getHeight());
+		IterationBuffer whole = new IterationBuffer(view);
+		renderer.render(whole, cRe, cIm, 200, null);
+		int[] argb = new int[100*65];
+		colors.apply(whole.getIterations(), whole.getPeriods(), 100, 65, 200, 1, argb);
+		int same = 0;
+		for (int y = 0; y < 65; ++y) {
+			for (int x = 0; x < 100; ++x) {
+				if ((read.getRGB(x, y) & 0xffffff) == (argb[y*100 + x] & 0xffffff)) {
+					same++;
+				}
+			}
+		}
+		// a strip's rows can be an ulp off the whole frame's, which tips the odd pixel
+		assertTrue(same >= 100*65 - 5);
+	}
+
+	@Test
+	public void failedWriteStops() {
+		ComplexRaster view = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 300, 300);
+		OutputStream broken = new OutputStream() {
+			private int written;
+			public void write(int b) throws IOException {
+				if (++written > 2000) {
+					throw new IOException("disk full");
+				}
+			}
+		};
+		try {
+			new StripRenderer(new TileRenderer(2), new ColorPass(null), 2).render(view, cRe, cIm, 100, broken);
+			fail();
+		} catch (IOException e) {
+			assertEquals("disk full", e.getMessage());
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void uncheckedFailureStops() throws IOException {
+		// fails on the encoder thread, past the header, with more strips to come than the ring holds
+		ComplexRaster view = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 1200, 600);
+		OutputStream broken = new OutputStream() {
+			private int written;
+			public void write(int b) {
+				if (++written > 2000) {
+					throw new IllegalStateException("encoder bug");
+				}
+			}
+		};
+		try {
+			new StripRenderer(new TileRenderer(2), new ColorPass(null), 2).render(view, cRe, cIm, 200, broken);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("encoder bug", e.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void pngNeedsEveryRow() throws IOException {
+		PngStripWriter png = new PngStripWriter(new ByteArrayOutputStream(), 4, 4);
+		png.write(new int[12], 3);
+		png.finish();
+	}
+}
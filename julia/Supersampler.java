@@ -0,0 +1,283 @@
+package julia;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adaptive anti-aliasing.  A frame is first rendered and colored at one
+ *   sample per pixel.  Only the pixels whose count differs from one of their
+ *   eight neighbors can show a jagged edge, and the higher the difference
+ *   the more it shows (neighbors one apart are the gentle steps of the
+ *   bands outside the set).  The pixels of highest contrast are iterated
+ *   again at n by n points spread over their area and given the average of
+ *   their colors, as many as fit in a budget of samples (BUDGET), so
+ *   smoothing costs less than the frame did whatever n and the picture.
+ *   <p>
+ *   The samples of a pixel lie on an n by n grid that is shifted by a random
+ *   fraction of a sample, different for every pixel, so neighboring pixels
+ *   do not sample in lockstep and no moire pattern builds up.
+ *   <p>
+ *   The counts of the samples are kept apart from their colors (Samples),
+ *   so a new palette only has to shade them again.
+ * @author Ross Larson
+ *
+ */
+public class Supersampler {
+
+	/**
+	 * Edge pixels per task when sampling in parallel
+	 */
+	private static final int CHUNK = 64;
+
+	/**
+	 * Samples per pixel of the frame that supersampling may take.  A sample
+	 *   costs several times what a pixel of a subdivided render does, so this
+	 *   keeps smoothing to under as long again as the frame took.
+	 */
+	public static final double BUDGET = .1;
+
+	private TileRenderer renderer;
+
+	/**
+	 * The counts of the edge pixels of a frame at n by n samples each, kept
+	 *   so the frame can be colored again with another palette without
+	 *   iterating them again.
+	 */
+	public static class Samples {
+		private int[] edges, iters, periods;
+		private int n, limit, bufferLimit;
+
+		Samples(int[] edges, int n, int limit, int bufferLimit) {
+			this.edges = edges;
+			this.n = n;
+			this.limit = limit;
+			this.bufferLimit = bufferLimit;
+			iters = new int[edges.length*n*n];
+			periods = new int[edges.length*n*n];
+		}
+
+		/**
+		 * @param b counts of a frame
+		 * @param limit iteration limit being drawn
+		 * @param n samples per pixel in each direction
+		 * @return true when these are the samples of b for limit and n
+		 */
+		public boolean isFor(IterationBuffer b, int limit, int n) {
+			return this.n == n && this.limit == limit && bufferLimit == b.getLimit();
+		}
+
+		/**
+		 * @return the number of pixels supersampled
+		 */
+		public int size() {
+			return edges.length;
+		}
+	}
+
+	/**
+	 * @param renderer supplies the pool, the formula and the engines
+	 */
+	public Supersampler(TileRenderer renderer) {
+		this.renderer = renderer;
+	}
+
+	/**
+	 * The pixels of a frame that get supersampled.  A pixel's contrast is
+	 *   the most its count, with everything at or past the limit counting as
+	 *   one value, differs from the count of one of its eight neighbors.
+	 *   Pixels of contrast 1 or more are taken highest contrast first, in
+	 *   bands of powers of two, and in order within the band that reaches
+	 *   the cap, until there are BUDGET samples per pixel of the frame.
+	 * @param b counts of the frame
+	 * @param limit iteration limit being drawn
+	 * @param n samples per pixel in each direction
+	 * @return their indices, one row after another
+	 */
+	public int[] edges(IterationBuffer b, int limit, int n) {
+		int width = b.getWidth(), height = b.getHeight();
+		int[] iters = b.getIterations();
+		// each neighboring pair once, from the pixel above or to the left
+		int[] most = new int[width*height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int p = y*width + x, it = Math.min(iters[p], limit);
+				if (x + 1 < width) {
+					pair(most, p, p + 1, it, Math.min(iters[p + 1], limit));
+				}
+				if (y + 1 < height) {
+					int q = p + width;
+					for (int i = Math.max(0, x - 1); i <= Math.min(width - 1, x + 1); i++) {
+						pair(most, p, q - x + i, it, Math.min(iters[q - x + i], limit));
+					}
+				}
+			}
+		}
+		// contrast of every pixel as 1 + its highest bit, and how many pixels have each
+		byte[] band = new byte[width*height];
+		int[] bands = new int[33];
+		for (int p = 0; p < band.length; p++) {
+			band[p] = (byte) (32 - Integer.numberOfLeadingZeros(most[p]));
+			bands[band[p]]++;
+		}
+		int cap = (int) (BUDGET*width*height / (n*n)), lowest = 32, count = 0;
+		while (lowest > 1 && count + bands[lowest] <= cap) {
+			count += bands[lowest--];
+		}
+		// every pixel above the lowest band, and as many of the lowest as fit
+		int room = Math.min(cap - count, bands[lowest]);
+		int[] edges = new int[count + room];
+		int e = 0;
+		for (int p = 0; p < band.length; p++) {
+			if (band[p] > lowest || (band[p] == lowest && room-- > 0)) {
+				edges[e++] = p;
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Raise the contrast of neighbors p and q, of counts a and b.
+	 */
+	private static void pair(int[] most, int p, int q, int a, int b) {
+		int d = Math.abs(a - b);
+		if (d > most[p]) {
+			most[p] = d;
+		}
+		if (d > most[q]) {
+			most[q] = d;
+		}
+	}
+
+	/**
+	 * Supersample the edge pixels of a colored frame.  Same as sample
+	 *   followed by shade.
+	 * @param b counts of the frame at one sample per pixel
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param limit iteration limit being drawn
+	 * @param n samples per pixel in each direction, at least 2
+	 * @param colors turns the samples into colors
+	 * @param argb colors of the frame; the edge pixels are replaced
+	 * @param cancelled checked before each block of pixels, may be null
+	 * @return the number of pixels supersampled
+	 */
+	public int apply(IterationBuffer b, double cRe, double cIm, int limit, int n, ColorPass colors, int[] argb,
+			AtomicBoolean cancelled) {
+		Samples samples = sample(b, cRe, cIm, limit, n, cancelled);
+		shade(samples, colors, argb);
+		return samples.size();
+	}
+
+	/**
+	 * Iterate the edge pixels of a frame at n by n points each.
+	 * @param b counts of the frame at one sample per pixel
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param limit iteration limit being drawn
+	 * @param n samples per pixel in each direction, at least 2
+	 * @param cancelled checked before each block of pixels, may be null
+	 * @return the counts of the samples
+	 */
+	public Samples sample(IterationBuffer b, double cRe, double cIm, int limit, int n, AtomicBoolean cancelled) {
+		Samples samples = new Samples(edges(b, limit, n), n, limit, b.getLimit());
+		int count = samples.size();
+		ForkJoinPool pool = renderer.getPool();
+		if (pool == null) {
+			for (int from = 0; from < count; from += CHUNK) {
+				sample(b, samples, from, Math.min(from + CHUNK, count), cRe, cIm, cancelled);
+			}
+		}
+		else {
+			pool.invoke(new SampleTask(b, samples, 0, count, cRe, cIm, cancelled));
+		}
+		return samples;
+	}
+
+	/**
+	 * Give every supersampled pixel the average color of its samples.
+	 * @param samples from sample
+	 * @param colors turns the samples into colors
+	 * @param argb colors of the frame; the edge pixels are replaced
+	 */
+	public void shade(Samples samples, ColorPass colors, int[] argb) {
+		int k = samples.n*samples.n;
+		for (int e = 0; e < samples.edges.length; e++) {
+			int a = 0, r = 0, g = 0, bl = 0;
+			for (int i = e*k; i < (e + 1)*k; i++) {
+				int c = colors.color(samples.iters[i], samples.periods[i], samples.limit);
+				a += c >>> 24;
+				r += (c >> 16) & 0xff;
+				g += (c >> 8) & 0xff;
+				bl += c & 0xff;
+			}
+			argb[samples.edges[e]] = (a + k/2) / k << 24 | (r + k/2) / k << 16 | (g + k/2) / k << 8 | (bl + k/2) / k;
+		}
+	}
+
+	/**
+	 * Supersample edges [from, to), a chunk that starts on a multiple of CHUNK.
+	 */
+	private void sample(IterationBuffer b, Samples samples, int from, int to, double cRe, double cIm,
+			AtomicBoolean cancelled) {
+		if (cancelled != null && cancelled.get()) {
+			throw new CancellationException();
+		}
+		int width = b.getWidth(), n = samples.n, k = n*n;
+		// the same shifts for the same pixels every time, whichever thread gets them
+		Random random = new Random(from);
+		for (int e = from; e < to; e++) {
+			int x = samples.edges[e] % width, y = samples.edges[e] / width;
+			double u = random.nextDouble(), v = random.nextDouble();
+			IterationBuffer s = samples(b, x, y, u, v, n, cRe, cIm, samples.limit);
+			System.arraycopy(s.iters, 0, samples.iters, e*k, k);
+			System.arraycopy(s.period, 0, samples.periods, e*k, k);
+		}
+	}
+
+	/**
+	 * Iterate pixel (x, y) of b at n by n points, shifted by (u, v) of a sample.
+	 */
+	private IterationBuffer samples(IterationBuffer b, int x, int y, double u, double v, int n, double cRe, double cIm,
+			int limit) {
+		ComplexRaster cr = b.getRaster();
+		double left = x - .5 + u/n, top = y - .5 + v/n, right = left + (n - 1.0)/n, bottom = top + (n - 1.0)/n;
+		ComplexRaster area = new ComplexRaster(cr.getPoint(left, top), cr.getPoint(right, bottom), n, n);
+		IterationBuffer s = new IterationBuffer(area);
+		renderer.engineFor(s).advance(s, 0, n*n, 1, cRe, cIm, limit);
+		return s;
+	}
+
+	private class SampleTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private IterationBuffer b;
+		private Samples samples;
+		private int from, to;
+		private double cRe, cIm;
+		private AtomicBoolean cancelled;
+
+		SampleTask(IterationBuffer b, Samples samples, int from, int to, double cRe, double cIm,
+				AtomicBoolean cancelled) {
+			this.b = b;
+			this.samples = samples;
+			this.from = from;
+			this.to = to;
+			this.cRe = cRe;
+			this.cIm = cIm;
+			this.cancelled = cancelled;
+		}
+
+		protected void compute() {
+			if (to - from <= CHUNK) {
+				sample(b, samples, from, to, cRe, cIm, cancelled);
+				return;
+			}
+			// split on a multiple of CHUNK so every chunk gets the same seed whatever the split
+			int mid = from + Math.max(1, (to - from) / CHUNK / 2) * CHUNK;
+			invokeAll(new SampleTask(b, samples, from, mid, cRe, cIm, cancelled),
+					new SampleTask(b, samples, mid, to, cRe, cIm, cancelled));
+		}
+	}
+}
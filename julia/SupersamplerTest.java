@@ -0,0 +1,105 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class SupersamplerTest {
+
+	final private double cRe = -.7795, cIm = .134;
+
+	private int[] frame(TileRenderer renderer, IterationBuffer b, ColorPass colors, int limit) {
+		renderer.render(b, cRe, cIm, limit, null);
+		int[] argb = new int[b.getWidth()*b.getHeight()];
+		colors.apply(b.getIterations(), b.getPeriods(), b.getWidth(), b.getHeight(), limit, 1, argb);
+		return argb;
+	}
+
+	@Test
+	public void onlyEdgesChange() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 96, 96);
+		TileRenderer renderer = new TileRenderer(2);
+		ColorPass colors = new ColorPass(null);
+		IterationBuffer b = new IterationBuffer(cr);
+		int[] plain = frame(renderer, b, colors, 200);
+		int[] smooth = plain.clone();
+		Supersampler s = new Supersampler(renderer);
+		int[] edges = s.edges(b, 200, 4);
+		assertEquals(edges.length, s.apply(b, cRe, cIm, 200, 4, colors, smooth, null));
+		assertTrue(edges.length > 0 && edges.length < plain.length);
+		boolean[] edge = new boolean[plain.length];
+		for (int e : edges) {
+			edge[e] = true;
+		}
+		int changed = 0;
+		for (int i = 0; i < plain.length; ++i) {
+			if (!edge[i]) {
+				assertEquals(plain[i], smooth[i]);
+			}
+			else if (plain[i] != smooth[i]) {
+				changed++;
+			}
+		}
+		assertTrue(changed > edges.length / 2);
+		// the same pixels get the same samples, serial or parallel
+		int[] serial = plain.clone();
+		new Supersampler(new TileRenderer((java.util.concurrent.ForkJoinPool) null)).apply(b, cRe, cIm, 200, 4, colors,
+				serial, null);
+		assertArrayEquals(smooth, serial);
+	}
+
+	@Test
+	public void samplesShadeAgain() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 64, 64);
+		TileRenderer renderer = new TileRenderer(2);
+		ColorPass colors = new ColorPass(null);
+		IterationBuffer b = new IterationBuffer(cr);
+		int[] plain = frame(renderer, b, colors, 200);
+		Supersampler s = new Supersampler(renderer);
+		Supersampler.Samples samples = s.sample(b, cRe, cIm, 200, 3, null);
+		assertTrue(samples.isFor(b, 200, 3));
+		assertFalse(samples.isFor(b, 100, 3));
+		assertFalse(samples.isFor(b, 200, 2));
+		// a recolor shades the kept samples, the same as sampling again
+		colors.setOffset(7);
+		int[] again = plain.clone(), shaded = plain.clone();
+		s.apply(b, cRe, cIm, 200, 3, colors, again, null);
+		s.shade(samples, colors, shaded);
+		assertArrayEquals(again, shaded);
+	}
+
+	@Test
+	public void flatAreasHaveNoEdges() {
+		// far outside radius 2 everything escapes at once
+		ComplexRaster cr = new ComplexRaster(new Complex(10, 10), new Complex(11, 9), 20, 20);
+		TileRenderer renderer = new TileRenderer(2);
+		IterationBuffer b = new IterationBuffer(cr);
+		frame(renderer, b, new ColorPass(null), 100);
+		assertEquals(0, new Supersampler(renderer).edges(b, 100, 2).length);
+	}
+
+	@Test
+	public void costIsBounded() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 256, 256);
+		TileRenderer renderer = new TileRenderer((java.util.concurrent.ForkJoinPool) null);
+		Supersampler s = new Supersampler(renderer);
+		int pixels = 256*256;
+		long plain = Long.MAX_VALUE, smooth = Long.MAX_VALUE;
+		for (int run = 0; run < 5; run++) {
+			IterationBuffer b = new IterationBuffer(cr);
+			long start = System.nanoTime();
+			renderer.render(b, cRe, cIm, 200, null);
+			long rendered = System.nanoTime();
+			Supersampler.Samples samples = s.sample(b, cRe, cIm, 200, 4, null);
+			plain = Math.min(plain, rendered - start);
+			smooth = Math.min(smooth, System.nanoTime() - rendered);
+			// a small share of the pixels, as many as the budget allows on this view
+			assertTrue(samples.size()*16 <= Supersampler.BUDGET*pixels);
+			assertTrue(samples.size() > Supersampler.BUDGET*pixels/16 - 1);
+			assertTrue(samples.size() < pixels / 100);
+		}
+		// about as long again as the frame, and far from the 16 times a full supersample takes
+		assertTrue("plain " + plain + " ns, smoothing " + smooth + " ns", smooth < 2*plain);
+	}
+}
@@ -0,0 +1,379 @@
+package julia;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the per-pixel state of views that have been rendered, so going back
+ *   to an area costs nothing.  The state is cut into SIZE by SIZE tiles of a
+ *   quadtree pyramid: level 0 is the grid of a base view, and every level
+ *   halves the pixel spacing of the one above, all sharing the base view's
+ *   upper-left corner.  Zooming in and out with Julia.zoomIn and zoomOut
+ *   stays on the pyramid, so each tile can be shared by every view that
+ *   shows it.  Views whose spacing or offset is not on the pyramid are
+ *   neither served nor stored.
+ *   <p>
+ *   A tile is stored for one formula, constant and iteration limit, and
+ *   records which of its pixels are known; tiles on the edge of a view are
+ *   only partly known.  When the cache holds more than its byte budget,
+ *   the tiles used longest ago are dropped.  A TileStore behind the cache
+ *   keeps whole tiles on disk, across runs and between instances.
+ * @author Ross Larson
+ *
+ */
+public class TileCache {
+
+	/**
+	 * Width and height of a tile in pixels
+	 */
+	public static final int SIZE = 32;
+
+	/**
+	 * How far, in pixels, a view may be from the pyramid's grid and still count as on it
+	 */
+	private static final double ALIGNED = 1e-6;
+
+	/**
+	 * Bytes one tile takes: a count, a cycle length, z and two flags per pixel, plus its key
+	 */
+	private static final long TILE_BYTES = SIZE*SIZE*(4 + 4 + 8 + 8 + 1 + 1) + 128;
+
+	/**
+	 * What a tile is a picture of
+	 */
+	static class Key {
+		final String formula;
+		final double cRe, cIm;
+		final int level, maxIters;
+		final long x, y;
+
+		Key(String formula, double cRe, double cIm, int level, long x, long y, int maxIters) {
+			this.formula = formula;
+			this.cRe = cRe;
+			this.cIm = cIm;
+			this.level = level;
+			this.x = x;
+			this.y = y;
+			this.maxIters = maxIters;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return formula.equals(k.formula) && Double.compare(cRe, k.cRe) == 0 && Double.compare(cIm, k.cIm) == 0
+					&& level == k.level && x == k.x && y == k.y && maxIters == k.maxIters;
+		}
+
+		public int hashCode() {
+			long h = formula.hashCode();
+			h = 31*h + Double.hashCode(cRe);
+			h = 31*h + Double.hashCode(cIm);
+			h = 31*h + level;
+			h = 31*h + x;
+			h = 31*h + y;
+			h = 31*h + maxIters;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	/**
+	 * The state of a tile's pixels, as far as it is known
+	 */
+	static class Tile {
+		final int[] iters = new int[SIZE*SIZE], period = new int[SIZE*SIZE];
+		final double[] re = new double[SIZE*SIZE], im = new double[SIZE*SIZE];
+		final boolean[] filled = new boolean[SIZE*SIZE], known = new boolean[SIZE*SIZE];
+		/**
+		 * How many pixels are known
+		 */
+		int count;
+		/**
+		 * Whether the tile is in the TileStore
+		 */
+		boolean saved;
+	}
+
+	/**
+	 * Told when the TileStore fails, on the thread that was using it.
+	 */
+	public interface StoreListener {
+		/**
+		 * @param store the store the cache now goes on without
+		 * @param e what went wrong
+		 */
+		void storeFailed(TileStore store, IOException e);
+	}
+
+	/**
+	 * Where a view sits on the pyramid: its level, and the grid position of its upper-left pixel.
+	 */
+	private static class Place {
+		int level;
+		long x, y;
+	}
+
+	private double originRe, originIm, spacing;
+	private long maxBytes;
+	private LinkedHashMap<Key, Tile> tiles;
+	private TileStore store;
+	private StoreListener listener;
+	private long hits, misses, loads;
+
+	/**
+	 * @param base the view whose grid is level 0; its pixels must be square
+	 * @param maxBytes memory budget for the tiles
+	 */
+	public TileCache(ComplexRaster base, long maxBytes) {
+		originRe = base.getReal(0);
+		originIm = base.getImaginary(0);
+		spacing = base.getPixelWidth();
+		this.maxBytes = maxBytes;
+		// in access order, so the eldest entry is the one used longest ago
+		tiles = new LinkedHashMap<Key, Tile>(16, .75f, true);
+	}
+
+	/**
+	 * @return where cr sits on the pyramid, or null if it is off it
+	 */
+	private Place place(ComplexRaster cr) {
+		double s = cr.getPixelWidth();
+		if (Math.abs(cr.getPixelHeight() - s) > s*ALIGNED) {
+			return null;
+		}
+		long level = Math.round(Math.log(spacing / s) / Math.log(2));
+		if (Math.abs(level) > 1000 || Math.abs(Math.scalb(spacing, (int) -level) - s) > s*ALIGNED) {
+			return null;
+		}
+		double x = (cr.getReal(0) - originRe) / s, y = (originIm - cr.getImaginary(0)) / s;
+		Place p = new Place();
+		p.level = (int) level;
+		p.x = Math.round(x);
+		p.y = Math.round(y);
+		if (Math.abs(x - p.x) > ALIGNED || Math.abs(y - p.y) > ALIGNED) {
+			return null;
+		}
+		return p;
+	}
+
+	/**
+	 * Copy every cached pixel of the buffer's view into the buffer, giving
+	 *   those pixels the state they had when they were stored.
+	 * @param b the buffer of the view about to be rendered
+	 * @param formula name of the formula, as FractalFormula.getName gives it
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param maxIters the iteration limit about to be rendered
+	 * @return the number of pixels copied
+	 */
+	public synchronized int fill(IterationBuffer b, String formula, double cRe, double cIm, int maxIters) {
+		Place p = place(b.getRaster());
+		if (p == null) {
+			return 0;
+		}
+		int width = b.getWidth(), height = b.getHeight();
+		int copied = 0;
+		boolean anyFilled = false;
+		for (long ty = Math.floorDiv(p.y, SIZE); ty*SIZE < p.y + height; ty++) {
+			for (long tx = Math.floorDiv(p.x, SIZE); tx*SIZE < p.x + width; tx++) {
+				Key key = new Key(formula, cRe, cIm, p.level, tx, ty, maxIters);
+				Tile t = tiles.get(key);
+				if (t == null) {
+					t = load(key);
+				}
+				if (t == null) {
+					misses++;
+					continue;
+				}
+				hits++;
+				for (int j = 0; j < SIZE; j++) {
+					long y = ty*SIZE + j - p.y;
+					for (int i = 0; i < SIZE; i++) {
+						long x = tx*SIZE + i - p.x;
+						int k = j*SIZE + i;
+						if (x < 0 || x >= width || y < 0 || y >= height || !t.known[k]) {
+							continue;
+						}
+						int q = (int) y*width + (int) x;
+						b.iters[q] = t.iters[k];
+						b.period[q] = t.period[k];
+						b.re[q] = t.re[k];
+						b.im[q] = t.im[k];
+						b.filled[q] = t.filled[k];
+						anyFilled |= t.filled[k];
+						copied++;
+					}
+				}
+			}
+		}
+		if (anyFilled) {
+			b.noteFilled();
+		}
+		return copied;
+	}
+
+	/**
+	 * Store every pixel of a buffer that has just been rendered to maxIters.
+	 * @param b the rendered buffer
+	 * @param formula name of the formula, as FractalFormula.getName gives it
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param maxIters the iteration limit b was rendered to
+	 */
+	public synchronized void store(IterationBuffer b, String formula, double cRe, double cIm, int maxIters) {
+		Place p = place(b.getRaster());
+		if (p == null) {
+			return;
+		}
+		int width = b.getWidth(), height = b.getHeight();
+		for (long ty = Math.floorDiv(p.y, SIZE); ty*SIZE < p.y + height; ty++) {
+			for (long tx = Math.floorDiv(p.x, SIZE); tx*SIZE < p.x + width; tx++) {
+				Key key = new Key(formula, cRe, cIm, p.level, tx, ty, maxIters);
+				Tile t = tiles.get(key);
+				if (t == null) {
+					t = new Tile();
+					tiles.put(key, t);
+				}
+				for (int j = 0; j < SIZE; j++) {
+					long y = ty*SIZE + j - p.y;
+					for (int i = 0; i < SIZE; i++) {
+						long x = tx*SIZE + i - p.x;
+						if (x < 0 || x >= width || y < 0 || y >= height) {
+							continue;
+						}
+						int k = j*SIZE + i, q = (int) y*width + (int) x;
+						t.iters[k] = b.iters[q];
+						t.period[k] = b.period[q];
+						t.re[k] = b.re[q];
+						t.im[k] = b.im[q];
+						t.filled[k] = b.filled[q];
+						if (!t.known[k]) {
+							t.known[k] = true;
+							t.count++;
+						}
+					}
+				}
+				if (t.count == SIZE*SIZE && !t.saved) {
+					save(key, t);
+				}
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * @return the tile from the store, now also in memory, or null if the store does not have it
+	 */
+	private Tile load(Key key) {
+		if (store == null) {
+			return null;
+		}
+		try {
+			Tile t = store.load(key);
+			if (t != null) {
+				loads++;
+				tiles.put(key, t);
+			}
+			return t;
+		} catch (IOException e) {
+			lost(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Write a whole tile to the store, if there is one and it has room.
+	 */
+	private void save(Key key, Tile t) {
+		if (store == null) {
+			return;
+		}
+		try {
+			t.saved = store.save(key, t);
+		} catch (IOException e) {
+			lost(e);
+		}
+	}
+
+	/**
+	 * A store that fails once is not trusted again; rendering goes on without it.
+	 */
+	private void lost(IOException e) {
+		TileStore failed = store;
+		store = null;
+		if (listener != null) {
+			listener.storeFailed(failed, e);
+		}
+	}
+
+	/**
+	 * Drop the tiles used longest ago until the rest fit the budget.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<Key, Tile>> eldest = tiles.entrySet().iterator();
+		while (getBytes() > maxBytes && eldest.hasNext()) {
+			eldest.next();
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * A store that fails is dropped; the listener hears about it, if there is one.
+	 * @param listener told when the store fails, or null
+	 */
+	public synchronized void setStoreListener(StoreListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Back the cache with tiles on disk: tiles missing from memory are
+	 *   looked for in the store, and every tile that becomes whole is written to it.
+	 * @param store the disk tier, or null for none
+	 */
+	public synchronized void setStore(TileStore store) {
+		this.store = store;
+	}
+
+	public synchronized TileStore getStore() {
+		return store;
+	}
+
+	/**
+	 * @return the number of tiles found by fill(), in memory or in the store
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of the hits that were read from the store
+	 */
+	public synchronized long getLoads() {
+		return loads;
+	}
+
+	/**
+	 * @return the number of tiles fill() looked for and did not find
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the memory the tiles take, roughly
+	 */
+	public synchronized long getBytes() {
+		return tiles.size() * TILE_BYTES;
+	}
+
+	public synchronized int size() {
+		return tiles.size();
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+	}
+}
@@ -0,0 +1,78 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+
+import org.junit.Test;
+
+
+public class TileCacheTest {
+
+	final private double cRe = -.7795, cIm = .134;
+	final private ComplexRaster base = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 128, 128);
+
+	private IterationBuffer render(TileCache cache, ComplexRaster view, int maxIters) {
+		IterationBuffer b = new IterationBuffer(view);
+		cache.fill(b, "julia", cRe, cIm, maxIters);
+		new TileRenderer(2).render(b, cRe, cIm, maxIters, null);
+		cache.store(b, "julia", cRe, cIm, maxIters);
+		return b;
+	}
+
+	@Test
+	public void revisitedViewIsAllHits() {
+		TileCache cache = new TileCache(base, 1L << 30);
+		IterationBuffer first = render(cache, base, 300);
+		assertEquals(16, cache.getMisses());
+		ComplexRaster in = base.zoom(new Point(32, 32), 64);
+		render(cache, in, 300);
+		render(cache, in.zoom(new Point(-64, -64), 256), 300);
+		IterationBuffer back = new IterationBuffer(base);
+		long misses = cache.getMisses();
+		assertEquals(128*128, cache.fill(back, "julia", cRe, cIm, 300));
+		assertEquals(misses, cache.getMisses());
+		assertArrayEquals(first.getIterations(), back.getIterations());
+		// another limit or constant is another picture
+		assertEquals(0, cache.fill(new IterationBuffer(base), "julia", cRe, cIm, 301));
+		assertEquals(0, cache.fill(new IterationBuffer(base), "julia", -1, .1, 300));
+	}
+
+	@Test
+	public void partlyCachedSameAsFresh() {
+		TileCache cache = new TileCache(base, 1L << 30);
+		ComplexRaster in = base.zoom(new Point(32, 32), 64);
+		render(cache, in, 300);
+		// half a tile off the cached view, so its edge tiles are only partly known
+		ComplexRaster moved = in.zoom(new Point(16, 40), 128);
+		IterationBuffer b = new IterationBuffer(moved);
+		int copied = cache.fill(b, "julia", cRe, cIm, 300);
+		assertTrue(copied > 0 && copied < 128*128);
+		new TileRenderer(2).render(b, cRe, cIm, 300, null);
+		int[] fresh = new int[128*128];
+		new TileRenderer(2).render(moved, cRe, cIm, 300, fresh);
+		assertArrayEquals(fresh, b.getIterations());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		// room for 20 of the 16 + 16 tiles of two views
+		TileCache cache = new TileCache(base, 20*(TileCache.SIZE*TileCache.SIZE*26 + 128));
+		render(cache, base, 100);
+		render(cache, base.zoom(new Point(32, 32), 64), 100);
+		assertEquals(20, cache.size());
+		assertTrue(cache.getBytes() <= 20*(TileCache.SIZE*TileCache.SIZE*26 + 128));
+		// the zoomed view came last, so it is whole and the first is not
+		assertEquals(128*128, cache.fill(new IterationBuffer(base.zoom(new Point(32, 32), 64)), "julia", cRe, cIm, 100));
+		assertEquals(4*TileCache.SIZE*TileCache.SIZE, cache.fill(new IterationBuffer(base), "julia", cRe, cIm, 100));
+	}
+
+	@Test
+	public void offThePyramid() {
+		TileCache cache = new TileCache(base, 1L << 30);
+		// a third of the spacing is on no level
+		render(cache, base.zoom(new Point(0, 0), 43), 100);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits() + cache.getMisses());
+	}
+}
@@ -0,0 +1,592 @@
+package julia;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the iteration counts of a whole ComplexRaster by cutting it into
+ *   square tiles and running them on a ForkJoinPool.  Tiles inside the set
+ *   cost maxIters per pixel while tiles outside finish almost at once, so the
+ *   tile list is split in halves and idle workers steal the unfinished halves.
+ * @author Ross Larson
+ *
+ */
+public class TileRenderer {
+
+	/**
+	 * Width and height of a tile in pixels
+	 */
+	public static final int TILE = 32;
+
+	/**
+	 * Spacing of the samples in the first progressive pass.  TILE must be a multiple of it.
+	 */
+	public static final int COARSEST = 8;
+
+	/**
+	 * Smallest pixel spacing the float engine is used for.  Floats are about
+	 *   2.4e-7 apart near radius 2, so views this coarse are still hundreds
+	 *   of floats between neighboring pixels; finer ones escalate to the
+	 *   double engine.
+	 */
+	public static final double FLOAT_SCALE = 1e-4;
+
+	/**
+	 * Rectangles this small or smaller are scanned instead of subdivided
+	 */
+	private static final int SMALLEST = 4;
+
+	/**
+	 * Told when a progressive pass is complete.
+	 */
+	public interface PassListener {
+		/**
+		 * Every pixel whose x and y are both multiples of step now holds its
+		 *   final count, and stands for the step by step block below and to its right.
+		 * @param step spacing of the finished samples: 8, then 4, 2 and finally 1
+		 */
+		void passDone(int step);
+	}
+
+	private ForkJoinPool pool;
+	private Engine engine, floats;
+	private FractalFormula formula;
+	private IterationBuffer buffer;
+	private boolean subdivide, symmetry;
+
+	/**
+	 * Renders on the common pool, which has one worker per core, with
+	 *   the fastest engine available.
+	 */
+	public TileRenderer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Renders on a pool of its own
+	 * @param threads number of worker threads
+	 */
+	public TileRenderer(int threads) {
+		this(new ForkJoinPool(threads));
+	}
+
+	/**
+	 * Renders on the supplied pool
+	 * @param pool the pool that runs the tiles, or null to run them one
+	 *   after another on the calling thread
+	 */
+	public TileRenderer(ForkJoinPool pool) {
+		this.pool = pool;
+		this.engine = Engines.best();
+		this.formula = new JuliaFormula();
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Choose the engine that runs the orbits.  The default is Engines.best().
+	 * @param engine the new engine
+	 */
+	public void setEngine(Engine engine) {
+		this.engine = engine;
+	}
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Choose an engine for shallow views, usually Engines.floats().  Views
+	 *   whose pixels are at least FLOAT_SCALE apart are then rendered with it
+	 *   and all others with the main engine.  Its counts can differ from the
+	 *   double ones in a few pixels on the edge of the set.
+	 * @param floats the shallow engine, or null (the default) to always use the main engine
+	 */
+	public void setFloatEngine(Engine floats) {
+		this.floats = floats;
+	}
+
+	public Engine getFloatEngine() {
+		return floats;
+	}
+
+	/**
+	 * Choose what is iterated.  JuliaFormula, the default, runs on the
+	 *   engines; any other formula runs its own loop.  The kept buffer is
+	 *   dropped, since its counts belong to the old formula.
+	 * @param formula the new formula
+	 */
+	public synchronized void setFormula(FractalFormula formula) {
+		this.formula = formula;
+		buffer = null;
+	}
+
+	public FractalFormula getFormula() {
+		return formula;
+	}
+
+	/**
+	 * Drop the buffer kept between frames, for instance because the constant
+	 *   changed and none of its counts are any good.
+	 */
+	public synchronized void forget() {
+		buffer = null;
+	}
+
+	/**
+	 * @return the engine for the formula and the pixel spacing of b's raster
+	 */
+	Engine engineFor(IterationBuffer b) {
+		if (!(formula instanceof JuliaFormula)) {
+			return formula;
+		}
+		ComplexRaster cr = b.getRaster();
+		if (floats != null && cr.getPixelWidth() >= FLOAT_SCALE && cr.getPixelHeight() >= FLOAT_SCALE) {
+			return floats;
+		}
+		return engine;
+	}
+
+	/**
+	 * Turn Mariani-Silver subdivision on or off for render().  When on, each
+	 *   tile is handled as a rectangle whose border is computed first; if the
+	 *   whole border has one count the inside is filled with it, otherwise the
+	 *   inside is split in four and each part is handled the same way.  Large
+	 *   areas of one count then cost only their outline.  Like any border
+	 *   tracing method it can miss details thinner than a pixel that do not
+	 *   reach the border.  Progressive rendering always scans.
+	 * @param subdivide true to subdivide, false (the default) to compute every pixel
+	 */
+	public void setSubdivide(boolean subdivide) {
+		this.subdivide = subdivide;
+	}
+
+	public boolean isSubdivide() {
+		return subdivide;
+	}
+
+	/**
+	 * Turn the point symmetry shortcut on or off.  The Julia set of z*z + c
+	 *   looks the same turned half way around the origin (as do the other
+	 *   formulas whose isPointSymmetric() says so), so when the view's
+	 *   grid is symmetric about 0 only one pixel of each mirrored pair is
+	 *   iterated and the other gets a copy (see PointSymmetry).  A view
+	 *   centered on the origin costs half as much.  Only full resolution
+	 *   scans use it; the coarse progressive passes compute what they sample.
+	 * @param symmetry true to copy mirrored pixels, false (the default) to compute every pixel
+	 */
+	public void setSymmetry(boolean symmetry) {
+		this.symmetry = symmetry;
+	}
+
+	public boolean isSymmetry() {
+		return symmetry;
+	}
+
+	/**
+	 * The iteration buffer this renderer keeps between frames.  Asking for
+	 *   the view of the last frame returns the same buffer, with every count
+	 *   and orbit it holds.  Asking for any other view starts a fresh one that
+	 *   takes over every pixel the two views share (see IterationBuffer.reuse),
+	 *   so the kept buffer must always be for the same constant.
+	 * @param view the viewport about to be rendered
+	 * @return per-pixel state for view
+	 */
+	public synchronized IterationBuffer getBuffer(ComplexRaster view) {
+		if (buffer == null || buffer.getRaster() != view) {
+			IterationBuffer fresh = new IterationBuffer(view);
+			fresh.setEngine(engineFor(fresh));
+			if (buffer != null) {
+				fresh.reuse(buffer);
+			}
+			buffer = fresh;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Fill out with the iteration count of every pixel of the raster.
+	 *   Pixel (x, y) goes to out[y*width + x].  Blocks until every tile is done.
+	 * @param cr the viewport
+	 * @param cRe real part of the Julia constant
+	 * @param cIm imaginary part of the Julia constant
+	 * @param maxIters iteration limit
+	 * @param out one int per pixel
+	 */
+	public void render(ComplexRaster cr, double cRe, double cIm, int maxIters, int[] out) {
+		IterationBuffer b = new IterationBuffer(cr);
+		render(b, cRe, cIm, maxIters, null);
+		int[] iters = b.getIterations();
+		for (int i = 0; i < out.length; i++) {
+			// cycles report maxIters here, like any other pixel that did not escape
+			out[i] = Math.min(iters[i], maxIters);
+		}
+	}
+
+	/**
+	 * Iterate every pixel of the buffer until it escapes or reaches maxIters,
+	 *   continuing from whatever state the buffer already holds.  Gives up with
+	 *   a CancellationException once cancelled is set; tiles that have already
+	 *   started are finished first, and the buffer's limit is only raised
+	 *   when every tile is done.
+	 * @param b per-pixel state of the viewport
+	 * @param cRe real part of the Julia constant
+	 * @param cIm imaginary part of the Julia constant
+	 * @param maxIters iteration limit
+	 * @param cancelled checked before each tile, may be null
+	 */
+	public void render(IterationBuffer b, double cRe, double cIm, int maxIters, AtomicBoolean cancelled) {
+		b.setEngine(engineFor(b));
+		List<Rectangle> tiles = tiles(b.getWidth(), b.getHeight());
+		if (pool == null) {
+			renderInOrder(tiles, 1, false, b, null, cRe, cIm, maxIters, cancelled);
+		}
+		else {
+			pool.invoke(new TileTask(tiles, 0, tiles.size(), b, cRe, cIm, maxIters, cancelled));
+		}
+		mirror(b, cRe, cIm, maxIters);
+		b.setLimit(maxIters);
+	}
+
+	/**
+	 * Same result as render(), but computed coarse to fine so there is
+	 *   something to show almost at once.  The first pass computes every
+	 *   COARSEST'th pixel in both directions, and each later pass halves the
+	 *   spacing, computing only the samples the earlier passes did not.
+	 *   Within a pass the tiles nearest the focus are started first.
+	 * @param b per-pixel state of the viewport
+	 * @param cRe real part of the Julia constant
+	 * @param cIm imaginary part of the Julia constant
+	 * @param maxIters iteration limit
+	 * @param focus pixel whose neighborhood matters most, usually the zoom center
+	 * @param listener told after each pass, on the calling thread, may be null
+	 * @param cancelled checked before each tile, may be null
+	 */
+	public void renderProgressive(IterationBuffer b, double cRe, double cIm, int maxIters,
+			final Point focus, PassListener listener, AtomicBoolean cancelled) {
+		b.setEngine(engineFor(b));
+		List<Rectangle> tiles = tiles(b.getWidth(), b.getHeight());
+		Collections.sort(tiles, new Comparator<Rectangle>() {
+			public int compare(Rectangle a, Rectangle b) {
+				return Double.compare(distance(a, focus), distance(b, focus));
+			}
+		});
+		for (int step = COARSEST; step >= 1; step /= 2) {
+			renderPass(tiles, step, step < COARSEST, b, null, cRe, cIm, maxIters, cancelled);
+			if (step == 1) {
+				mirror(b, cRe, cIm, maxIters);
+				b.setLimit(maxIters);
+			}
+			if (listener != null) {
+				listener.passDone(step);
+			}
+		}
+	}
+
+	/**
+	 * Render one frame of a sweep of the constant (see ConstantSweep), using
+	 *   the frame before as a second opinion for Mariani-Silver subdivision:
+	 *   a rectangle is filled only when its border has one count in this
+	 *   frame and had that same count all round in last.  That is never less
+	 *   exact than plain subdivision, and with no last frame every pixel is
+	 *   computed.  The tiles are started in the order of the list, for
+	 *   instance most expensive first, so no worker is left with a slow tile
+	 *   at the end.
+	 * @param b per-pixel state of the viewport, fresh
+	 * @param last the frame before, of the same view and iteration limit, or null
+	 * @param cRe real part of the Julia constant
+	 * @param cIm imaginary part of the Julia constant
+	 * @param maxIters iteration limit
+	 * @param order every tile of tiles(), in the order to start them
+	 * @param cancelled checked before each tile, may be null
+	 */
+	public void render(IterationBuffer b, IterationBuffer last, double cRe, double cIm, int maxIters,
+			List<Rectangle> order, AtomicBoolean cancelled) {
+		b.setEngine(engineFor(b));
+		renderPass(order, 1, false, b, last, cRe, cIm, maxIters, cancelled);
+		mirror(b, cRe, cIm, maxIters);
+		b.setLimit(maxIters);
+	}
+
+	/**
+	 * Render a list of tiles at one step, the workers starting them in the list's order.
+	 */
+	private void renderPass(List<Rectangle> tiles, int step, boolean refine, IterationBuffer b, IterationBuffer last,
+			double cRe, double cIm, int maxIters, AtomicBoolean cancelled) {
+		if (pool == null) {
+			renderInOrder(tiles, step, refine, b, last, cRe, cIm, maxIters, cancelled);
+			return;
+		}
+		AtomicInteger next = new AtomicInteger();
+		int workers = Math.min(pool.getParallelism(), tiles.size());
+		final List<PassTask> tasks = new ArrayList<PassTask>();
+		for (int i = 0; i < workers; i++) {
+			tasks.add(new PassTask(tiles, next, step, refine, b, last, cRe, cIm, maxIters, cancelled));
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	private static double distance(Rectangle t, Point p) {
+		return Point.distanceSq(t.getCenterX(), t.getCenterY(), p.x, p.y);
+	}
+
+	/**
+	 * Cut a width by height area into TILE sized squares, row by row.
+	 *   Tiles on the right and bottom edges are clipped.
+	 */
+	static List<Rectangle> tiles(int width, int height) {
+		List<Rectangle> tiles = new ArrayList<Rectangle>();
+		for (int y = 0; y < height; y += TILE) {
+			for (int x = 0; x < width; x += TILE) {
+				tiles.add(new Rectangle(x, y, Math.min(TILE, width - x), Math.min(TILE, height - y)));
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * Computes the samples of tile t that lie on a step by step grid.  When
+	 *   refining, rows that are a multiple of 2*step already hold every other
+	 *   sample from the coarser pass, so only the odd multiples of step are done there.
+	 *   With a last frame the tile is always subdivided, see render(b, last, ...).
+	 */
+	private void renderTile(Rectangle t, int step, boolean refine, IterationBuffer b, IterationBuffer last, double cRe,
+			double cIm, int maxIters) {
+		PointSymmetry mirror = symmetry && step == 1 && formula.isPointSymmetric() ? b.getSymmetry() : null;
+		if (mirror != null && mirror.covers(t.x, t.y, t.width, t.height)) {
+			// every pixel of the tile is copied afterwards
+			return;
+		}
+		if ((subdivide || last != null) && step == 1 && !refine) {
+			subdivide(b, last, t.x, t.y, t.x + t.width, t.y + t.height, cRe, cIm, maxIters);
+			return;
+		}
+		int width = b.getWidth();
+		int right = t.x + t.width;
+		for (int y = t.y; y < t.y + t.height; y += step) {
+			if (refine && y % (2*step) == 0) {
+				advanceRow(b, mirror, y, t.x + step, right, 2*step, cRe, cIm, maxIters);
+			}
+			else {
+				advanceRow(b, mirror, y, t.x, right, step, cRe, cIm, maxIters);
+			}
+		}
+	}
+
+	/**
+	 * Advance the pixels from, from + step, ... below to of row y, leaving
+	 *   out the ones mirror says will be copied.
+	 */
+	private void advanceRow(IterationBuffer b, PointSymmetry mirror, int y, int from, int to, int step,
+			double cRe, double cIm, int maxIters) {
+		int width = b.getWidth();
+		int first = mirror == null ? to : Math.max(from, mirror.first(y));
+		int last = mirror == null ? to : mirror.last(y);
+		if (first > last || first >= to) {
+			advance(b, y*width + from, count(from, to, step), step, cRe, cIm, maxIters);
+			return;
+		}
+		advance(b, y*width + from, count(from, first, step), step, cRe, cIm, maxIters);
+		// first sample past the copied run
+		int next = last + 1 + Math.floorMod(from - last - 1, step);
+		advance(b, y*width + next, count(next, to, step), step, cRe, cIm, maxIters);
+	}
+
+	/**
+	 * Copy the mirrored pixels once a full resolution pass has finished,
+	 *   then compute the few the copy left alone.
+	 */
+	private void mirror(IterationBuffer b, double cRe, double cIm, int maxIters) {
+		PointSymmetry mirror = symmetry && formula.isPointSymmetric() ? b.getSymmetry() : null;
+		if (mirror == null || mirror.copy(b) == 0) {
+			return;
+		}
+		int width = b.getWidth();
+		for (int y = 0; y < b.getHeight(); y++) {
+			for (int x = mirror.first(y); x <= mirror.last(y); x++) {
+				int i = y*width + x;
+				if (b.iters[i] == 0 && !b.filled[i]) {
+					engineFor(b).advance(b, i, 1, 1, cRe, cIm, maxIters);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mariani-Silver on the rectangle [x0, x1) by [y0, y1).  With a last
+	 *   frame, a rectangle is only filled if its border also had those
+	 *   counts in last.
+	 */
+	private void subdivide(IterationBuffer b, IterationBuffer last, int x0, int y0, int x1, int y1, double cRe, double cIm,
+			int maxIters) {
+		int width = b.getWidth();
+		int w = x1 - x0, h = y1 - y0;
+		if (w <= 0 || h <= 0) {
+			return;
+		}
+		if (w <= SMALLEST || h <= SMALLEST) {
+			for (int y = y0; y < y1; y++) {
+				advance(b, y*width + x0, w, 1, cRe, cIm, maxIters);
+			}
+			return;
+		}
+		advance(b, y0*width + x0, w, 1, cRe, cIm, maxIters);
+		advance(b, (y1-1)*width + x0, w, 1, cRe, cIm, maxIters);
+		advance(b, (y0+1)*width + x0, h - 2, width, cRe, cIm, maxIters);
+		advance(b, (y0+1)*width + x1 - 1, h - 2, width, cRe, cIm, maxIters);
+		int[] iters = b.iters;
+		// everything at or past the limit counts as one value: not escaped
+		int first = Math.min(iters[y0*width + x0], maxIters);
+		boolean same = true;
+		for (int x = x0; x < x1 && same; x++) {
+			same = Math.min(iters[y0*width + x], maxIters) == first
+					&& Math.min(iters[(y1-1)*width + x], maxIters) == first;
+		}
+		for (int y = y0 + 1; y < y1 - 1 && same; y++) {
+			same = Math.min(iters[y*width + x0], maxIters) == first
+					&& Math.min(iters[y*width + x1 - 1], maxIters) == first;
+		}
+		if (same && last != null) {
+			int[] before = last.iters;
+			for (int x = x0; x < x1 && same; x++) {
+				same = Math.min(before[y0*width + x], maxIters) == first
+						&& Math.min(before[(y1-1)*width + x], maxIters) == first;
+			}
+			for (int y = y0 + 1; y < y1 - 1 && same; y++) {
+				same = Math.min(before[y*width + x0], maxIters) == first
+						&& Math.min(before[y*width + x1 - 1], maxIters) == first;
+			}
+		}
+		if (same) {
+			b.fill(x0 + 1, y0 + 1, w - 2, h - 2, first);
+			return;
+		}
+		// split what is inside the border in four
+		int mx = (x0 + x1) / 2, my = (y0 + y1) / 2;
+		subdivide(b, last, x0 + 1, y0 + 1, mx, my, cRe, cIm, maxIters);
+		subdivide(b, last, mx, y0 + 1, x1 - 1, my, cRe, cIm, maxIters);
+		subdivide(b, last, x0 + 1, my, mx, y1 - 1, cRe, cIm, maxIters);
+		subdivide(b, last, mx, my, x1 - 1, y1 - 1, cRe, cIm, maxIters);
+	}
+
+	/**
+	 * Have the engine continue count pixels, every stride'th from start,
+	 *   after putting any that were filled rather than computed back at their start.
+	 */
+	private void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		b.refresh(start, count, stride);
+		engineFor(b).advance(b, start, count, stride, cRe, cIm, maxIters);
+	}
+
+	private void renderInOrder(List<Rectangle> tiles, int step, boolean refine, IterationBuffer b, IterationBuffer last,
+			double cRe, double cIm, int maxIters, AtomicBoolean cancelled) {
+		for (Rectangle t : tiles) {
+			if (cancelled != null && cancelled.get()) {
+				throw new CancellationException();
+			}
+			renderTile(t, step, refine, b, last, cRe, cIm, maxIters);
+		}
+	}
+
+	/**
+	 * Number of values from, from + step, ... that are below to.
+	 */
+	private static int count(int from, int to, int step) {
+		return from < to ? (to - from + step - 1) / step : 0;
+	}
+
+	/**
+	 * One worker of a pass over a sorted list of tiles.  The workers share a
+	 *   counter and keep taking the next tile of the list, so tiles start in
+	 *   priority order no matter which worker is free.
+	 */
+	private class PassTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private List<Rectangle> tiles;
+		private AtomicInteger next;
+		private int step;
+		private boolean refine;
+		private IterationBuffer b, last;
+		private double cRe, cIm;
+		private int maxIters;
+		private AtomicBoolean cancelled;
+
+		PassTask(List<Rectangle> tiles, AtomicInteger next, int step, boolean refine, IterationBuffer b,
+				IterationBuffer last, double cRe, double cIm, int maxIters, AtomicBoolean cancelled) {
+			this.tiles = tiles;
+			this.next = next;
+			this.step = step;
+			this.refine = refine;
+			this.b = b;
+			this.last = last;
+			this.cRe = cRe;
+			this.cIm = cIm;
+			this.maxIters = maxIters;
+			this.cancelled = cancelled;
+		}
+
+		protected void compute() {
+			for (int i = next.getAndIncrement(); i < tiles.size(); i = next.getAndIncrement()) {
+				if (cancelled != null && cancelled.get()) {
+					throw new CancellationException();
+				}
+				renderTile(tiles.get(i), step, refine, b, last, cRe, cIm, maxIters);
+			}
+		}
+	}
+
+	/**
+	 * Renders tiles [from, to) of the list, forking the upper half off
+	 *   until only one tile is left.
+	 */
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private List<Rectangle> tiles;
+		private int from, to;
+		private IterationBuffer b;
+		private double cRe, cIm;
+		private int maxIters;
+		private AtomicBoolean cancelled;
+
+		TileTask(List<Rectangle> tiles, int from, int to, IterationBuffer b, double cRe, double cIm, int maxIters,
+				AtomicBoolean cancelled) {
+			this.tiles = tiles;
+			this.from = from;
+			this.to = to;
+			this.b = b;
+			this.cRe = cRe;
+			this.cIm = cIm;
+			this.maxIters = maxIters;
+			this.cancelled = cancelled;
+		}
+
+		protected void compute() {
+			if (cancelled != null && cancelled.get()) {
+				throw new CancellationException();
+			}
+			if (to - from == 1) {
+				renderTile(tiles.get(from), 1, false, b, null, cRe, cIm, maxIters);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new TileTask(tiles, from, mid, b, cRe, cIm, maxIters, cancelled),
+					new TileTask(tiles, mid, to, b, cRe, cIm, maxIters, cancelled));
+		}
+	}
+}
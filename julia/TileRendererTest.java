@@ -0,0 +1,221 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class TileRendererTest {
+	
+	final private double cRe = -.7795, cIm = .134;
+	
+	private void checkSameAsSerial(ComplexRaster cr, int maxIters) {
+		int w = cr.getWidth(), h = cr.getHeight();
+		int[] serial = new int[w*h];
+		ScalarEngine engine = new ScalarEngine();
+		for (int y = 0; y < h; ++y) {
+			engine.iterateRow(cr, y, cRe, cIm, maxIters, serial, y*w);
+		}
+		int[] tiled = new int[w*h];
+		new TileRenderer(4).render(cr, cRe, cIm, maxIters, tiled);
+		assertArrayEquals(serial, tiled);
+	}
+	
+	@Test
+	public void defaultView() {
+		checkSameAsSerial(new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 256, 256), 200);
+	}
+	
+	@Test
+	public void ragged() {
+		// sizes that are not a multiple of the tile size leave clipped tiles on the edges
+		checkSameAsSerial(new ComplexRaster(new Complex(-.5, .4), new Complex(.3, -.1), 45, 77), 300);
+	}
+	
+	@Test
+	public void progressiveSameAsRender() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 100, 100);
+		int[] whole = new int[100*100];
+		TileRenderer renderer = new TileRenderer(3);
+		renderer.render(cr, cRe, cIm, 150, whole);
+		IterationBuffer progressive = new IterationBuffer(cr);
+		final StringBuilder steps = new StringBuilder();
+		renderer.renderProgressive(progressive, cRe, cIm, 150, new java.awt.Point(70, 20),
+				new TileRenderer.PassListener() {
+					public void passDone(int step) {
+						steps.append(step);
+					}
+				}, null);
+		assertEquals("8421", steps.toString());
+		assertArrayEquals(whole, progressive.getIterations());
+		assertEquals(150, progressive.getLimit());
+	}
+	
+	@Test
+	public void resumeSameAsFresh() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-1, 1), new Complex(1, -1), 64, 64);
+		TileRenderer renderer = new TileRenderer(2);
+		IterationBuffer resumed = new IterationBuffer(cr);
+		renderer.render(resumed, cRe, cIm, 100, null);
+		renderer.render(resumed, cRe, cIm, 150, null);
+		renderer.render(resumed, cRe, cIm, 400, null);
+		int[] fresh = new int[64*64];
+		renderer.render(cr, cRe, cIm, 400, fresh);
+		assertArrayEquals(fresh, resumed.getIterations());
+		assertEquals(400, resumed.getLimit());
+		// a lower limit leaves the buffer alone
+		renderer.render(resumed, cRe, cIm, 50, null);
+		assertArrayEquals(fresh, resumed.getIterations());
+		assertEquals(400, resumed.getLimit());
+	}
+	
+	@Test
+	public void subdivideFillsUniformAreas() {
+		// a constant in the period 2 bulb has large solid interior areas
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 128, 128);
+		TileRenderer renderer = new TileRenderer(2);
+		int[] scanned = new int[128*128];
+		renderer.render(cr, -1, .1, 300, scanned);
+		renderer.setSubdivide(true);
+		IterationBuffer b = new IterationBuffer(cr);
+		renderer.render(b, -1, .1, 300, null);
+		int same = 0, filled = 0;
+		for (int i = 0; i < scanned.length; ++i) {
+			if (Math.min(b.getIterations()[i], 300) == scanned[i]) {
+				same++;
+			}
+			if (b.filled[i]) {
+				filled++;
+			}
+		}
+		assertTrue(filled > scanned.length / 10);
+		assertTrue(same > scanned.length * 99 / 100);
+		// scanning afterwards computes the filled pixels for real
+		renderer.setSubdivide(false);
+		renderer.render(b, -1, .1, 400, null);
+		int[] fresh = new int[128*128];
+		renderer.render(cr, -1, .1, 400, fresh);
+		for (int i = 0; i < fresh.length; ++i) {
+			assertEquals(fresh[i], Math.min(b.getIterations()[i], 400));
+		}
+	}
+	
+	@Test
+	public void lastFrameConfirmsFills() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 128, 128);
+		TileRenderer renderer = new TileRenderer(2);
+		IterationBuffer last = new IterationBuffer(cr);
+		renderer.render(last, -1, .1, 300, null);
+		// a last frame whose borders have other counts everywhere: nothing is filled
+		IterationBuffer other = new IterationBuffer(cr);
+		java.util.Arrays.fill(other.iters, 7);
+		IterationBuffer b = new IterationBuffer(cr);
+		renderer.render(b, other, -1, .1, 300, TileRenderer.tiles(128, 128), null);
+		for (int i = 0; i < b.filled.length; ++i) {
+			assertFalse(b.filled[i]);
+		}
+		assertArrayEquals(last.getIterations(), b.getIterations());
+		// the same picture before: the uniform areas are filled, as plain subdivision does
+		b = new IterationBuffer(cr);
+		renderer.render(b, last, -1, .1, 300, TileRenderer.tiles(128, 128), null);
+		int filled = 0;
+		for (int i = 0; i < b.filled.length; ++i) {
+			if (b.filled[i]) {
+				filled++;
+			}
+		}
+		assertTrue(filled > b.filled.length / 10);
+		assertEquals(300, b.getLimit());
+	}
+	
+	private void checkSymmetry(ComplexRaster cr, int maxIters) {
+		assertNotNull(PointSymmetry.of(cr));
+		int w = cr.getWidth(), h = cr.getHeight();
+		int[] full = new int[w*h];
+		TileRenderer renderer = new TileRenderer(2);
+		renderer.render(cr, cRe, cIm, maxIters, full);
+		renderer.setSymmetry(true);
+		int[] mirrored = new int[w*h];
+		renderer.render(cr, cRe, cIm, maxIters, mirrored);
+		assertArrayEquals(full, mirrored);
+		IterationBuffer progressive = new IterationBuffer(cr);
+		renderer.renderProgressive(progressive, cRe, cIm, maxIters, new java.awt.Point(0, 0), null, null);
+		assertArrayEquals(full, progressive.getIterations());
+	}
+	
+	@Test
+	public void symmetryCentered() {
+		checkSymmetry(new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 100, 100), 100);
+		// odd sizes put the origin on a pixel
+		checkSymmetry(new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 99, 99), 100);
+	}
+	
+	@Test
+	public void symmetryOffCenter() {
+		// only part of the view has its mirror image inside the view
+		checkSymmetry(new ComplexRaster(new Complex(-1.5, 2), new Complex(2.5, -1), 97, 129), 100);
+		// grids that miss the mirror image are computed in full
+		assertNull(PointSymmetry.of(new ComplexRaster(new Complex(-1.3, 2), new Complex(2.5, -1), 97, 129)));
+	}
+	
+	private void checkReuse(ComplexRaster before, ComplexRaster after, int expected) {
+		TileRenderer renderer = new TileRenderer(2);
+		renderer.render(renderer.getBuffer(before), cRe, cIm, 200, null);
+		IterationBuffer b = new IterationBuffer(after);
+		b.setEngine(renderer.engineFor(b));
+		assertEquals(expected, b.reuse(renderer.getBuffer(before)));
+		renderer.render(b, cRe, cIm, 200, null);
+		int[] fresh = new int[after.getWidth()*after.getHeight()];
+		renderer.render(after, cRe, cIm, 200, fresh);
+		assertArrayEquals(fresh, b.getIterations());
+		// the renderer takes over the shared pixels by itself
+		assertEquals(0, renderer.getBuffer(after).getLimit());
+		assertEquals(b.getIterations()[0], renderer.getBuffer(after).getIterations()[0]);
+	}
+	
+	@Test
+	public void reuseAfterZoom() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 100, 100);
+		// zooming in 2x keeps every other sample; pixels outside radius 2 are never taken over
+		ComplexRaster in = cr.zoom(new java.awt.Point(25, 25), 50);
+		assertEquals(cr.getPixelWidth() / 2, in.getPixelWidth(), 1e-15);
+		checkReuse(cr, in, 50*50);
+		// zooming out is its inverse, and keeps every sample of the zoomed view
+		ComplexRaster out = in.zoom(new java.awt.Point(-50, -50), 200);
+		assertEquals(cr.getReal(0), out.getReal(0), 1e-15);
+		assertEquals(cr.getImaginary(99), out.getImaginary(99), 1e-15);
+		checkReuse(in, out, 100*100 / 4);
+		// any other box zooms by exactly its size; a 30 pixel box only shares every 10th sample
+		ComplexRaster box = cr.zoom(new java.awt.Point(10, 10), 30);
+		assertEquals(cr.getPixelWidth() * .3, box.getPixelWidth(), 1e-15);
+		checkReuse(cr, box, 90);
+		// a box of most of the view still zooms in
+		assertEquals(cr.getPixelWidth() * .8, cr.zoom(new java.awt.Point(0, 0), 80).getPixelWidth(), 1e-15);
+	}
+	
+	@Test
+	public void noReuseAcrossEngines() {
+		ComplexRaster cr = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 100, 100);
+		TileRenderer renderer = new TileRenderer(2);
+		renderer.setFloatEngine(new ScalarEngine());
+		IterationBuffer coarse = renderer.getBuffer(cr);
+		renderer.render(coarse, cRe, cIm, 200, null);
+		assertSame(renderer.getFloatEngine(), coarse.getEngine());
+		// the same zoom that shares 50*50 pixels within one engine shares none once floats are off
+		renderer.setFloatEngine(null);
+		IterationBuffer b = new IterationBuffer(cr.zoom(new java.awt.Point(25, 25), 50));
+		b.setEngine(renderer.engineFor(b));
+		assertSame(renderer.getEngine(), b.getEngine());
+		assertEquals(0, b.reuse(coarse));
+	}
+	
+	@Test
+	public void tilesCoverEverything() {
+		int covered = 0;
+		for (java.awt.Rectangle t : TileRenderer.tiles(77, 45)) {
+			covered += t.width * t.height;
+		}
+		assertEquals(77*45, covered);
+	}
+
+}
@@ -0,0 +1,288 @@
+package julia;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Whole tiles of a TileCache kept in a file, so they outlive the program
+ *   and can be shared by several programs at once.  The file is only ever
+ *   appended to: a short header, then one record per tile, each its key
+ *   followed by the state of its pixels.  Reads go through read-only
+ *   memory maps of the file, one per CHUNK bytes.  Each map runs on past
+ *   its chunk by the longest a record can be, so every record, and the
+ *   pixels of every record, can be read through the map of the chunk it
+ *   starts in.  When the file grows only its last map is made again, so
+ *   appending a tile costs a map of at most a chunk, not of the whole
+ *   file.  In memory there is only an index from key to
+ *   where the tile's pixels start, built by walking the record keys when
+ *   the store is opened and brought up to date whenever a tile is not in it,
+ *   since another program may have appended it since.
+ *   <p>
+ *   Appends hold a lock on the file, so programs sharing it never write
+ *   over each other.  A record cut short by a crash is dropped by the next
+ *   append.  Once the file has reached its byte budget, no more tiles are
+ *   written; the ones in it can still be read.
+ * @author Ross Larson
+ *
+ */
+public class TileStore implements Closeable {
+
+	/**
+	 * First bytes of the file, "JTS" and a version number
+	 */
+	private static final int MAGIC = 0x4a545301;
+
+	/**
+	 * First bytes of every record
+	 */
+	private static final int RECORD = 0x54494c45;
+
+	/**
+	 * Bytes of pixel state in a record: a count, a cycle length, z and the filled flag per pixel
+	 */
+	private static final int PAYLOAD = TileCache.SIZE*TileCache.SIZE*(4 + 4 + 8 + 8 + 1);
+
+	/**
+	 * Bytes of the longest record: its marker, a name of up to 65535 bytes, the rest of the key and the pixels
+	 */
+	private static final int SPAN = 4 + 2 + 0xffff + 40 + PAYLOAD;
+
+	/**
+	 * Bytes of the file each map starts apart
+	 */
+	static final int CHUNK = 1 << 24;
+
+	private File file;
+	private FileChannel channel;
+	private int chunk;
+	private ArrayList<MappedByteBuffer> maps;
+	private HashMap<TileCache.Key, Long> index;
+	private long maxBytes;
+	/**
+	 * End of the last whole record in the index
+	 */
+	private long end;
+
+	/**
+	 * Open a store, creating it if the file does not exist.
+	 * @param file where the tiles are kept
+	 * @param maxBytes size the file may grow to
+	 * @throws IOException if the file cannot be opened or is not a tile store
+	 */
+	public TileStore(File file, long maxBytes) throws IOException {
+		this(file, maxBytes, CHUNK);
+	}
+
+	/**
+	 * @param chunk bytes of the file each map starts apart, small to test records across chunks
+	 */
+	TileStore(File file, long maxBytes, int chunk) throws IOException {
+		this.file = file;
+		this.maxBytes = maxBytes;
+		this.chunk = chunk;
+		maps = new ArrayList<MappedByteBuffer>();
+		index = new HashMap<TileCache.Key, Long>();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		FileLock lock = channel.lock();
+		try {
+			if (channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(4);
+				header.putInt(MAGIC).flip();
+				channel.write(header, 0);
+			}
+			ByteBuffer header = ByteBuffer.allocate(4);
+			channel.read(header, 0);
+			if (header.position() < 4 || header.getInt(0) != MAGIC) {
+				channel.close();
+				throw new IOException(file + " is not a tile store");
+			}
+			end = 4;
+			scan();
+		} finally {
+			if (channel.isOpen()) {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Map the file up to size: the chunks not mapped yet, and again every
+	 *   mapped one that ends short of what it should cover now.  That is
+	 *   more than the last one: a chunk runs on SPAN bytes into the next, so
+	 *   the one before the last can be cut short by the end of the file too.
+	 */
+	private void map(long size) throws IOException {
+		// a file cut back after a crash drops the maps that ran past its end
+		while (!maps.isEmpty() && (long) (maps.size() - 1)*chunk + maps.get(maps.size() - 1).capacity() > size) {
+			maps.remove(maps.size() - 1);
+		}
+		for (int k = 0; (long) k*chunk < size; k++) {
+			long from = (long) k*chunk, length = Math.min((long) chunk + SPAN, size - from);
+			if (k < maps.size() && maps.get(k).capacity() == length) {
+				continue;
+			}
+			MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+			if (k < maps.size()) {
+				maps.set(k, m);
+			}
+			else {
+				maps.add(m);
+			}
+		}
+	}
+
+	/**
+	 * @param at where in the file to read
+	 * @return the map of the chunk at is in, which holds at least SPAN bytes from at that are in the file
+	 */
+	private MappedByteBuffer mapAt(long at) {
+		return maps.get((int) (at / chunk));
+	}
+
+	/**
+	 * Index the records appended since the last scan, mapping the file further if it grew.
+	 */
+	private void scan() throws IOException {
+		long size = channel.size();
+		map(size);
+		while (end + 8 <= size) {
+			MappedByteBuffer map = mapAt(end);
+			long base = end - end % chunk;
+			int p = (int) (end - base);
+			if (map.getInt(p) != RECORD) {
+				break;
+			}
+			p += 4;
+			int length = map.getShort(p) & 0xffff;
+			p += 2;
+			if (base + p + length + 8*2 + 4 + 8*2 + 4 + PAYLOAD > size) {
+				// still being written, or cut short
+				break;
+			}
+			if (p + length + 8*2 + 4 + 8*2 + 4 + PAYLOAD > map.capacity()) {
+				// not mapped that far, which map() should not allow; indexed on the next scan
+				break;
+			}
+			byte[] name = new byte[length];
+			for (int i = 0; i < length; i++) {
+				name[i] = map.get(p + i);
+			}
+			p += length;
+			double cRe = map.getDouble(p), cIm = map.getDouble(p + 8);
+			int level = map.getInt(p + 16);
+			long x = map.getLong(p + 20), y = map.getLong(p + 28);
+			int maxIters = map.getInt(p + 36);
+			p += 40;
+			index.put(new TileCache.Key(new String(name, StandardCharsets.UTF_8), cRe, cIm, level, x, y, maxIters),
+					base + p);
+			end = base + p + PAYLOAD;
+		}
+	}
+
+	/**
+	 * @param key the tile to look for
+	 * @return the tile, whole, or null if the store does not have it
+	 * @throws IOException if the file cannot be read
+	 */
+	synchronized TileCache.Tile load(TileCache.Key key) throws IOException {
+		Long at = index.get(key);
+		if (at == null && channel.size() > end) {
+			scan();
+			at = index.get(key);
+		}
+		if (at == null) {
+			return null;
+		}
+		int n = TileCache.SIZE*TileCache.SIZE, p = (int) (at % chunk);
+		if (at / chunk >= maps.size() || p + PAYLOAD > mapAt(at).capacity()) {
+			// the index is ahead of the maps; a miss costs a render, not the render thread
+			return null;
+		}
+		MappedByteBuffer map = mapAt(at);
+		TileCache.Tile t = new TileCache.Tile();
+		for (int k = 0; k < n; k++, p += 25) {
+			t.iters[k] = map.getInt(p);
+			t.period[k] = map.getInt(p + 4);
+			t.re[k] = map.getDouble(p + 8);
+			t.im[k] = map.getDouble(p + 16);
+			t.filled[k] = map.get(p + 24) != 0;
+			t.known[k] = true;
+		}
+		t.count = n;
+		t.saved = true;
+		return t;
+	}
+
+	/**
+	 * Append a whole tile, unless the store has it already.
+	 * @param key what the tile is a picture of
+	 * @param t the tile, every pixel known
+	 * @return whether the tile is now in the store; false when the file is at its budget
+	 * @throws IOException if the file cannot be written
+	 */
+	synchronized boolean save(TileCache.Key key, TileCache.Tile t) throws IOException {
+		byte[] name = key.formula.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(4 + 2 + name.length + 40 + PAYLOAD);
+		record.putInt(RECORD).putShort((short) name.length).put(name);
+		record.putDouble(key.cRe).putDouble(key.cIm).putInt(key.level).putLong(key.x).putLong(key.y).putInt(key.maxIters);
+		for (int k = 0; k < TileCache.SIZE*TileCache.SIZE; k++) {
+			record.putInt(t.iters[k]).putInt(t.period[k]).putDouble(t.re[k]).putDouble(t.im[k]);
+			record.put((byte) (t.filled[k] ? 1 : 0));
+		}
+		record.flip();
+		FileLock lock = channel.lock();
+		try {
+			// another program may have written it, or more, in the meantime
+			scan();
+			if (index.containsKey(key)) {
+				return true;
+			}
+			if (end + record.limit() > maxBytes) {
+				return false;
+			}
+			// anything past the last whole record is left over from a crash
+			channel.truncate(end);
+			long at = end;
+			while (record.hasRemaining()) {
+				at += channel.write(record, at);
+			}
+			scan();
+		} finally {
+			lock.release();
+		}
+		return index.containsKey(key);
+	}
+
+	/**
+	 * @return the size of the file's whole records, in bytes
+	 */
+	public synchronized long getBytes() {
+		return end;
+	}
+
+	/**
+	 * @return the number of tiles in the store
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	public synchronized void close() throws IOException {
+		channel.close();
+		maps.clear();
+	}
+
+	public String toString() {
+		return file.toString();
+	}
+}
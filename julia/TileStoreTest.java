@@ -0,0 +1,182 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class TileStoreTest {
+
+	final private double cRe = -.7795, cIm = .134;
+	final private ComplexRaster base = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 128, 128);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private IterationBuffer render(TileCache cache, ComplexRaster view, int maxIters) {
+		IterationBuffer b = new IterationBuffer(view);
+		cache.fill(b, "julia", cRe, cIm, maxIters);
+		new TileRenderer(2).render(b, cRe, cIm, maxIters, null);
+		cache.store(b, "julia", cRe, cIm, maxIters);
+		return b;
+	}
+
+	@Test
+	public void tilesOutliveTheStore() throws IOException {
+		File file = folder.newFile("tiles");
+		TileStore store = new TileStore(file, 1L << 30);
+		TileCache cache = new TileCache(base, 1L << 30);
+		cache.setStore(store);
+		IterationBuffer first = render(cache, base, 300);
+		assertEquals(16, store.size());
+		store.close();
+		// as after a restart: nothing in memory
+		cache = new TileCache(base, 1L << 30);
+		store = new TileStore(file, 1L << 30);
+		cache.setStore(store);
+		IterationBuffer b = new IterationBuffer(base);
+		assertEquals(128*128, cache.fill(b, "julia", cRe, cIm, 300));
+		assertEquals(16, cache.getLoads());
+		assertArrayEquals(first.getIterations(), b.getIterations());
+		assertArrayEquals(first.getPeriods(), b.getPeriods());
+		// nothing written twice
+		long bytes = store.getBytes();
+		render(cache, base, 300);
+		assertEquals(bytes, store.getBytes());
+		store.close();
+	}
+
+	@Test
+	public void recordsAcrossChunks() throws IOException {
+		File file = folder.newFile("tiles");
+		// chunks smaller than a record, so records start and end in different chunks
+		TileStore store = new TileStore(file, 1L << 30, 10000);
+		TileCache cache = new TileCache(base, 1L << 30);
+		cache.setStore(store);
+		IterationBuffer first = render(cache, base, 200);
+		assertEquals(16, store.size());
+		store.close();
+		store = new TileStore(file, 1L << 30, 10000);
+		cache = new TileCache(base, 1L << 30);
+		cache.setStore(store);
+		IterationBuffer b = new IterationBuffer(base);
+		assertEquals(128*128, cache.fill(b, "julia", cRe, cIm, 200));
+		assertArrayEquals(first.getIterations(), b.getIterations());
+		store.close();
+		// and read with the usual chunks
+		store = new TileStore(file, 1L << 30);
+		assertEquals(16, store.size());
+		store.close();
+	}
+
+	@Test
+	public void leftoverOfACrashIsDropped() throws IOException {
+		File file = folder.newFile("tiles");
+		TileStore store = new TileStore(file, 1L << 30, 10000);
+		TileCache cache = new TileCache(base, 1L << 30);
+		cache.setStore(store);
+		render(cache, base, 100);
+		long bytes = store.getBytes();
+		// half a record, as if a program died writing it
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[30000]);
+		out.close();
+		cache = new TileCache(base, 1L << 30);
+		cache.setStore(store);
+		render(cache, base, 101);
+		assertEquals(32, store.size());
+		assertEquals(2*bytes - 4, store.getBytes());
+		assertEquals(file.length(), store.getBytes());
+		store.close();
+	}
+
+	@Test
+	public void failedStoreIsReported() throws IOException {
+		final TileStore store = new TileStore(folder.newFile("tiles"), 1L << 30);
+		TileCache cache = new TileCache(base, 1L << 30);
+		cache.setStore(store);
+		final int[] failures = new int[1];
+		cache.setStoreListener(new TileCache.StoreListener() {
+			public void storeFailed(TileStore failed, IOException e) {
+				assertSame(store, failed);
+				failures[0]++;
+			}
+		});
+		store.close();
+		render(cache, base, 100);
+		// told once, and the cache goes on in memory
+		assertEquals(1, failures[0]);
+		assertNull(cache.getStore());
+		assertEquals(16, cache.size());
+	}
+
+	@Test
+	public void readWhileAnotherGrowsTheFile() throws IOException {
+		File file = folder.newFile("tiles");
+		// small chunks, so the growth runs over the end of chunks the reader has mapped
+		TileStore one = new TileStore(file, 1L << 30, 10000), two = new TileStore(file, 1L << 30, 10000);
+		TileCache a = new TileCache(base, 1L << 30);
+		a.setStore(one);
+		for (int limit = 100; limit < 104; limit++) {
+			IterationBuffer written = render(a, base, limit);
+			TileCache b = new TileCache(base, 1L << 30);
+			if (limit == 101) {
+				// the reader maps the file while the writer is half way through a record
+				FileOutputStream out = new FileOutputStream(file, true);
+				out.write(new byte[30000]);
+				out.close();
+				assertNull(two.load(new TileCache.Key("julia", cRe, cIm, 0, 99, 99, limit)));
+			}
+			b.setStore(two);
+			IterationBuffer read = new IterationBuffer(base);
+			assertEquals(128*128, b.fill(read, "julia", cRe, cIm, limit));
+			assertArrayEquals(written.getIterations(), read.getIterations());
+		}
+		assertEquals(64, two.size());
+		one.close();
+		two.close();
+	}
+
+	@Test
+	public void sharedBetweenStores() throws IOException {
+		File file = folder.newFile("tiles");
+		TileStore one = new TileStore(file, 1L << 30), two = new TileStore(file, 1L << 30);
+		TileCache a = new TileCache(base, 1L << 30), b = new TileCache(base, 1L << 30);
+		a.setStore(one);
+		b.setStore(two);
+		render(a, base, 200);
+		assertEquals(0, two.size());
+		// the second store finds what the first one appended
+		assertEquals(128*128, b.fill(new IterationBuffer(base), "julia", cRe, cIm, 200));
+		assertEquals(16, two.size());
+		one.close();
+		two.close();
+	}
+
+	@Test
+	public void stopsAtBudget() throws IOException {
+		TileStore store = new TileStore(folder.newFile("tiles"), 100000);
+		TileCache cache = new TileCache(base, 1L << 30);
+		cache.setStore(store);
+		render(cache, base, 100);
+		// a tile takes about 25 kB
+		assertEquals(3, store.size());
+		assertTrue(store.getBytes() <= 100000);
+		store.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void notAStore() throws IOException {
+		File file = folder.newFile("other");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("not tiles".getBytes());
+		out.close();
+		new TileStore(file, 1L << 30);
+	}
+}
@@ -0,0 +1,49 @@
+package julia;
+
+/**
+ * The Tricorn: conj(z)^2 + c, over the parameter plane or as a Julia set.
+ * @author Ross Larson
+ *
+ */
+public final class TricornFormula extends FractalFormula {
+
+	/**
+	 * @param julia true for the Julia set of the constant, false for the parameter plane
+	 */
+	public TricornFormula(boolean julia) {
+		super(julia);
+	}
+
+	public void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		int[] counts = b.iters;
+		double[] zr = b.re, zi = b.im;
+		ComplexRaster cr = b.getRaster();
+		int width = b.getWidth();
+		boolean julia = isJulia();
+		for (int n = 0, i = start; n < count; n++, i += stride) {
+			int iters = counts[i];
+			double re = zr[i], im = zi[i];
+			double a = julia ? cRe : cr.getReal(i % width), c = julia ? cIm : cr.getImaginary(i / width);
+			while ((im*im + re*re < ScalarEngine.ESCAPE) && (iters < maxIters)) {
+				double t = re*re - im*im + a;
+				im = -2*re*im + c;
+				re = t;
+				iters++;
+			}
+			counts[i] = iters;
+			zr[i] = re;
+			zi[i] = im;
+		}
+	}
+
+	/**
+	 * conj(-z)^2 = conj(z)^2, so z and -z go the same way.
+	 */
+	public boolean isPointSymmetric() {
+		return isJulia();
+	}
+
+	public String getName() {
+		return isJulia() ? "tricorn julia" : "tricorn";
+	}
+}
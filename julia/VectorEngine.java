@@ -0,0 +1,133 @@
+package julia;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Escape-time engine that iterates a whole vector of pixels at once with
+ *   the JDK Vector API.  Lanes that have escaped or reached the limit are
+ *   masked off and stop changing, and the loop ends as soon as no lane is
+ *   left.  Each lane does the same arithmetic as ScalarEngine in the same
+ *   order, so the counts are identical.  Cycles are checked for lane by lane
+ *   against saved points, on the same schedule as ScalarEngine uses.
+ *   <p>
+ *   Needs the jdk.incubator.vector module (--add-modules jdk.incubator.vector
+ *   when compiling and running); use Engines.best() to fall back to the
+ *   scalar engine when it is missing.
+ * @author Ross Larson
+ *
+ */
+public class VectorEngine implements Engine {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private double epsilon;
+	private ScalarEngine tail;
+
+	/**
+	 * An engine that checks orbits for cycles with the default epsilon.
+	 */
+	public VectorEngine() {
+		this(ScalarEngine.PERIOD_EPSILON);
+	}
+
+	/**
+	 * @param epsilon cycle tolerance, as for ScalarEngine; 0 turns cycle checking off
+	 */
+	public VectorEngine(double epsilon) {
+		this.epsilon = epsilon;
+		this.tail = new ScalarEngine(epsilon);
+	}
+
+	public void advance(IterationBuffer b, int start, int count, int stride, double cRe, double cIm, int maxIters) {
+		int lanes = SPECIES.length();
+		int[] counts = b.iters, periods = b.period;
+		double[] zr = b.re, zi = b.im;
+		int[] map = new int[lanes];
+		for (int l = 0; l < lanes; l++) {
+			map[l] = l*stride;
+		}
+		double[] its = new double[lanes], found = new double[lanes], lanesRe = new double[lanes], lanesIm = new double[lanes];
+		int n = 0;
+		for (; n + lanes <= count; n += lanes) {
+			int base = start + n*stride;
+			for (int l = 0; l < lanes; l++) {
+				its[l] = counts[base + map[l]];
+			}
+			DoubleVector re, im;
+			if (stride == 1) {
+				re = DoubleVector.fromArray(SPECIES, zr, base);
+				im = DoubleVector.fromArray(SPECIES, zi, base);
+			}
+			else {
+				// gathered by hand: JDK 17's gather intrinsic has crashed the JIT compiled loop
+				for (int l = 0; l < lanes; l++) {
+					lanesRe[l] = zr[base + map[l]];
+					lanesIm[l] = zi[base + map[l]];
+				}
+				re = DoubleVector.fromArray(SPECIES, lanesRe, 0);
+				im = DoubleVector.fromArray(SPECIES, lanesIm, 0);
+			}
+			DoubleVector it = DoubleVector.fromArray(SPECIES, its, 0);
+			VectorMask<Double> active = im.mul(im).add(re.mul(re)).compare(VectorOperators.LT, ScalarEngine.ESCAPE)
+					.and(it.compare(VectorOperators.LT, maxIters));
+			if (!active.anyTrue()) {
+				// all of these are done already, leave them untouched
+				continue;
+			}
+			DoubleVector savedRe = re, savedIm = im;
+			DoubleVector period = DoubleVector.zero(SPECIES);
+			int steps = 0, window = 1;
+			while (active.anyTrue()) {
+				DoubleVector t = re.mul(re).sub(im.mul(im)).add(cRe);
+				DoubleVector u = re.mul(im).add(im.mul(re)).add(cIm);
+				re = re.blend(t, active);
+				im = im.blend(u, active);
+				it = it.add(1.0, active);
+				steps++;
+				VectorMask<Double> cycled = re.sub(savedRe).abs().compare(VectorOperators.LT, epsilon)
+						.and(im.sub(savedIm).abs().compare(VectorOperators.LT, epsilon)).and(active);
+				if (cycled.anyTrue()) {
+					period = period.blend(steps, cycled);
+					it = it.blend(IterationBuffer.INTERIOR, cycled);
+				}
+				if (steps == window) {
+					savedRe = re;
+					savedIm = im;
+					steps = 0;
+					window <<= 1;
+				}
+				active = im.mul(im).add(re.mul(re)).compare(VectorOperators.LT, ScalarEngine.ESCAPE)
+						.and(it.compare(VectorOperators.LT, maxIters));
+			}
+			if (stride == 1) {
+				re.intoArray(zr, base);
+				im.intoArray(zi, base);
+			}
+			else {
+				re.intoArray(lanesRe, 0);
+				im.intoArray(lanesIm, 0);
+				for (int l = 0; l < lanes; l++) {
+					zr[base + map[l]] = lanesRe[l];
+					zi[base + map[l]] = lanesIm[l];
+				}
+			}
+			it.intoArray(its, 0);
+			period.intoArray(found, 0);
+			for (int l = 0; l < lanes; l++) {
+				counts[base + map[l]] = (int) its[l];
+				if (found[l] > 0) {
+					periods[base + map[l]] = (int) found[l];
+				}
+			}
+		}
+		// fewer pixels left than lanes
+		tail.advance(b, start + n*stride, count - n, stride, cRe, cIm, maxIters);
+	}
+
+	public String getName() {
+		return "vector" + SPECIES.length();
+	}
+}
@@ -0,0 +1,368 @@
+package julia;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders the frames of a zoom from one view to another for a video.  The
+ *   scale changes geometrically, so the zoom looks steady, and the center
+ *   moves in step with the scale, so the end view's center stays put on
+ *   the screen while it is zoomed into.  An Easing bends the pace.
+ *   <p>
+ *   Neighboring frames of a smooth zoom differ in scale by a few percent,
+ *   so most of a frame is where the last frame already was.  Each frame is
+ *   started by reprojecting the last one: a pixel whose nearest pixel in the
+ *   last frame sits in a 3 by 3 block of one count and cycle length is given
+ *   that count without iterating, like a Mariani-Silver fill, and only the
+ *   rest are iterated, row blocks in parallel.  That is only done while the
+ *   scale changes by less than REPROJECT per frame, and every KEYFRAME'th
+ *   frame is computed in full so that filled pixels are not copied on and on.
+ *   <p>
+ *   Finished frames are colored into a small ring of buffers and handed to
+ *   a FrameWriter on a Pipeline's thread, so encoding and writing one
+ *   frame overlaps computing the next.  Views are iterated in doubles.
+ *   <p>
+ *   Limits: the frames themselves are computed one after another, each on
+ *   the whole pool, since each starts from the last.  Reprojection is a
+ *   nearest-neighbor fill that only trusts uniform 3 by 3 blocks, so thin
+ *   bands and filaments are always iterated again, and a pixel filled from
+ *   a block that hid detail between its samples keeps the block's count
+ *   until the next keyframe.  KEYFRAME and REPROJECT are fixed, not tuned
+ *   to the zoom's speed or the picture.
+ * @author Ross Larson
+ *
+ */
+public class ZoomAnimation {
+
+	/**
+	 * Largest change in scale from one frame to the next for which the last frame is reprojected
+	 */
+	public static final double REPROJECT = .1;
+
+	/**
+	 * Every this many frames, one is computed in full
+	 */
+	public static final int KEYFRAME = 8;
+
+	/**
+	 * Rows per task when iterating the pixels reprojection left
+	 */
+	private static final int ROWS = 8;
+
+	/**
+	 * Frame buffers between the renderer and the writer
+	 */
+	private static final int RING = 3;
+
+	/**
+	 * Maps the time from 0 to 1 through a zoom to how far along the zoom is, also from 0 to 1.
+	 */
+	public interface Easing {
+		double at(double t);
+	}
+
+	/**
+	 * Same pace throughout
+	 */
+	public static final Easing LINEAR = new Easing() {
+		public double at(double t) {
+			return t;
+		}
+	};
+
+	/**
+	 * Starts and stops gently (smoothstep)
+	 */
+	public static final Easing SMOOTH = new Easing() {
+		public double at(double t) {
+			return t*t*(3 - 2*t);
+		}
+	};
+
+	/**
+	 * Receives the finished frames in order, on the writer thread.
+	 */
+	public interface FrameWriter {
+		/**
+		 * @param frame number of the frame, from 0
+		 * @param argb the colors, one row after another; only valid during the call
+		 */
+		void write(int frame, int[] argb, int width, int height) throws IOException;
+
+		/**
+		 * Called after the last frame.
+		 */
+		void close() throws IOException;
+	}
+
+	/**
+	 * Writes each frame to a PNG file of its own: prefix00000.png, prefix00001.png and so on.
+	 * @param dir where the files go
+	 * @param prefix start of every file name
+	 */
+	public static FrameWriter pngSequence(final File dir, final String prefix) {
+		return new FrameWriter() {
+			public void write(int frame, int[] argb, int width, int height) throws IOException {
+				OutputStream out = new BufferedOutputStream(
+						new FileOutputStream(new File(dir, String.format("%s%05d.png", prefix, frame))), 1 << 16);
+				try {
+					PngStripWriter png = new PngStripWriter(out, width, height);
+					png.write(argb, height);
+					png.finish();
+				} finally {
+					out.close();
+				}
+			}
+
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Writes the frames as Motion JPEG: the JPEG of every frame, one after
+	 *   another, which ffmpeg and most players read as a video.
+	 * @param out where the frames go; closed after the last one
+	 */
+	public static FrameWriter mjpeg(final OutputStream out) {
+		return new FrameWriter() {
+			private BufferedImage image;
+
+			public void write(int frame, int[] argb, int width, int height) throws IOException {
+				if (image == null) {
+					image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				}
+				image.setRGB(0, 0, width, height, argb, 0, width);
+				if (!ImageIO.write(image, "jpg", out))
+					throw new IOException("No JPEG writer");
+			}
+
+			public void close() throws IOException {
+				out.close();
+			}
+		};
+	}
+
+	private TileRenderer renderer;
+	private ColorPass colors;
+	private long reused, computed;
+
+	/**
+	 * @param renderer iterates the frames, with its formula, on its pool
+	 * @param colors colors the frames
+	 */
+	public ZoomAnimation(TileRenderer renderer, ColorPass colors) {
+		this.renderer = renderer;
+		this.colors = colors;
+	}
+
+	/**
+	 * The view of one frame of a zoom.
+	 * @param from the first frame
+	 * @param to the last frame, the same size in pixels
+	 * @param frames number of frames, 2 or more
+	 * @param frame which one, from 0 to frames - 1
+	 * @param easing pace of the zoom
+	 * @return the frame's view
+	 */
+	public static ComplexRaster frame(ComplexRaster from, ComplexRaster to, int frames, int frame, Easing easing) {
+		int width = from.getWidth(), height = from.getHeight();
+		double e = easing.at(frame / (double) (frames - 1));
+		double s0 = from.getPixelWidth(), s1 = to.getPixelWidth();
+		double s = s0 * Math.pow(s1 / s0, e);
+		// how far the center has come: in step with the scale, or with e when the scale stays
+		double f = Math.abs(s0 - s1) > 1e-9*s0 ? (s0 - s) / (s0 - s1) : e;
+		double cx = (width - 1) / 2.0, cy = (height - 1) / 2.0;
+		double re = from.getReal(cx) + f*(to.getReal(cx) - from.getReal(cx));
+		double im = from.getImaginary(cy) + f*(to.getImaginary(cy) - from.getImaginary(cy));
+		return new ComplexRaster(new Complex(re - s*cx, im + s*cy), new Complex(re + s*cx, im - s*cy), height, width);
+	}
+
+	/**
+	 * Render every frame of a zoom and hand it to out, then close out.
+	 * @param from the first frame
+	 * @param to the last frame, the same size in pixels
+	 * @param frames number of frames, 2 or more
+	 * @param easing pace of the zoom
+	 * @param cRe real part of the constant
+	 * @param cIm imaginary part of the constant
+	 * @param maxIters iteration limit of every frame
+	 * @param out receives the frames in order
+	 * @throws IOException if out fails, or the thread is interrupted; anything
+	 *   else out throws is thrown as it is, once the rendering has stopped
+	 */
+	public void render(ComplexRaster from, ComplexRaster to, final int frames, Easing easing, double cRe, double cIm,
+			int maxIters, final FrameWriter out) throws IOException {
+		final int width = from.getWidth(), height = from.getHeight();
+		List<int[]> buffers = new ArrayList<int[]>();
+		for (int i = 0; i < RING; i++) {
+			buffers.add(new int[width*height]);
+		}
+		Pipeline<int[]> writer = new Pipeline<int[]>("frame writer", buffers, frames, new Pipeline.Stage<int[]>() {
+			public void take(int n, int[] argb) throws IOException {
+				out.write(n, argb, width, height);
+			}
+		});
+		try {
+			IterationBuffer last = null;
+			for (int n = 0; n < frames; n++) {
+				IterationBuffer b = new IterationBuffer(frame(from, to, frames, n, easing));
+				if (last != null && n % KEYFRAME != 0 && reproject(last, b) > 0) {
+					iterateRest(b, cRe, cIm, maxIters);
+				}
+				else {
+					renderer.render(b, cRe, cIm, maxIters, null);
+					count(0, width*height);
+				}
+				int[] argb = writer.free();
+				colors.apply(b.getIterations(), b.getPeriods(), width, height, maxIters, 1, argb);
+				writer.put(argb);
+				last = b;
+			}
+			writer.finish();
+		} finally {
+			// only does anything when the renderer did not get to the end
+			writer.stop();
+		}
+		out.close();
+	}
+
+	/**
+	 * Fill every pixel of b whose nearest pixel of old sits in a 3 by 3
+	 *   block of one count and cycle length with that count.
+	 * @return the number of pixels filled
+	 */
+	int reproject(IterationBuffer old, IterationBuffer b) {
+		ComplexRaster o = old.getRaster(), r = b.getRaster();
+		double ratio = r.getPixelWidth() / o.getPixelWidth();
+		if (Math.abs(ratio - 1) > REPROJECT) {
+			return 0;
+		}
+		int ow = old.getWidth(), oh = old.getHeight(), width = b.getWidth();
+		int filled = 0;
+		for (int y = 0; y < b.getHeight(); y++) {
+			int oy = (int) Math.round((o.getImaginary(0) - r.getImaginary(y)) / o.getPixelHeight());
+			if (oy < 1 || oy >= oh - 1) {
+				continue;
+			}
+			for (int x = 0; x < width; x++) {
+				int ox = (int) Math.round((r.getReal(x) - o.getReal(0)) / o.getPixelWidth());
+				if (ox < 1 || ox >= ow - 1) {
+					continue;
+				}
+				int q = oy*ow + ox, count = old.iters[q], period = old.period[q];
+				boolean same = true;
+				for (int j = -ow; j <= ow && same; j += ow) {
+					for (int i = -1; i <= 1; i++) {
+						if (old.iters[q + j + i] != count || old.period[q + j + i] != period) {
+							same = false;
+							break;
+						}
+					}
+				}
+				if (same) {
+					int p = y*width + x;
+					b.iters[p] = count;
+					b.period[p] = period;
+					b.filled[p] = true;
+					filled++;
+				}
+			}
+		}
+		if (filled > 0) {
+			b.noteFilled();
+		}
+		count(filled, 0);
+		return filled;
+	}
+
+	/**
+	 * Iterate every pixel reproject() did not fill, leaving the filled ones alone.
+	 */
+	private void iterateRest(IterationBuffer b, double cRe, double cIm, int maxIters) {
+		ForkJoinPool pool = renderer.getPool();
+		if (pool == null) {
+			iterateRows(b, 0, b.getHeight(), cRe, cIm, maxIters);
+		}
+		else {
+			pool.invoke(new RowTask(b, 0, b.getHeight(), cRe, cIm, maxIters));
+		}
+	}
+
+	private void iterateRows(IterationBuffer b, int from, int to, double cRe, double cIm, int maxIters) {
+		Engine engine = renderer.engineFor(b);
+		int width = b.getWidth();
+		long done = 0;
+		for (int y = from; y < to; y++) {
+			int x = 0;
+			while (x < width) {
+				while (x < width && b.filled[y*width + x]) {
+					x++;
+				}
+				int start = x;
+				while (x < width && !b.filled[y*width + x]) {
+					x++;
+				}
+				if (x > start) {
+					engine.advance(b, y*width + start, x - start, 1, cRe, cIm, maxIters);
+					done += x - start;
+				}
+			}
+		}
+		count(0, done);
+	}
+
+	private synchronized void count(long reused, long computed) {
+		this.reused += reused;
+		this.computed += computed;
+	}
+
+	/**
+	 * @return pixels given a count by reprojection, over all frames rendered so far
+	 */
+	public synchronized long getReused() {
+		return reused;
+	}
+
+	/**
+	 * @return pixels iterated, over all frames rendered so far
+	 */
+	public synchronized long getComputed() {
+		return computed;
+	}
+
+	private class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private IterationBuffer b;
+		private int from, to, maxIters;
+		private double cRe, cIm;
+
+		RowTask(IterationBuffer b, int from, int to, double cRe, double cIm, int maxIters) {
+			this.b = b;
+			this.from = from;
+			this.to = to;
+			this.cRe = cRe;
+			this.cIm = cIm;
+			this.maxIters = maxIters;
+		}
+
+		protected void compute() {
+			if (to - from <= ROWS) {
+				iterateRows(b, from, to, cRe, cIm, maxIters);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RowTask(b, from, mid, cRe, cIm, maxIters), new RowTask(b, mid, to, cRe, cIm, maxIters));
+		}
+	}
+}
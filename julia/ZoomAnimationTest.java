@@ -0,0 +1,106 @@
+package julia;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class ZoomAnimationTest {
+
+	final private double cRe = -.7795, cIm = .134;
+	final private ComplexRaster from = new ComplexRaster(new Complex(-2, 2), new Complex(2, -2), 96, 96);
+	final private ComplexRaster to = new ComplexRaster(new Complex(-.1, .6), new Complex(.3, .2), 96, 96);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void endsAreTheViews() {
+		for (ZoomAnimation.Easing easing : new ZoomAnimation.Easing[] { ZoomAnimation.LINEAR, ZoomAnimation.SMOOTH }) {
+			ComplexRaster first = ZoomAnimation.frame(from, to, 30, 0, easing);
+			ComplexRaster last = ZoomAnimation.frame(from, to, 30, 29, easing);
+			assertEquals(-2, first.getReal(0), 1e-12);
+			assertEquals(2, first.getImaginary(0), 1e-12);
+			assertEquals(-.1, last.getReal(0), 1e-12);
+			assertEquals(.2, last.getImaginary(95), 1e-12);
+			// each frame a little smaller than the one before
+			assertTrue(ZoomAnimation.frame(from, to, 30, 10, easing).getPixelWidth()
+					> ZoomAnimation.frame(from, to, 30, 11, easing).getPixelWidth());
+		}
+	}
+
+	@Test
+	public void reprojectedFramesNearlyExact() throws IOException {
+		TileRenderer renderer = new TileRenderer(2);
+		final ColorPass colors = new ColorPass(renderer.getPool());
+		ZoomAnimation animation = new ZoomAnimation(renderer, colors);
+		final List<int[]> frames = new ArrayList<int[]>();
+		animation.render(from, to, 30, ZoomAnimation.SMOOTH, cRe, cIm, 300, new ZoomAnimation.FrameWriter() {
+			public void write(int frame, int[] argb, int width, int height) {
+				assertEquals(frames.size(), frame);
+				frames.add(argb.clone());
+			}
+
+			public void close() {
+			}
+		});
+		assertEquals(30, frames.size());
+		assertTrue(animation.getReused() > 0);
+		assertEquals(30*96*96, animation.getReused() + animation.getComputed());
+		for (int n = 0; n < 30; n++) {
+			IterationBuffer b = new IterationBuffer(ZoomAnimation.frame(from, to, 30, n, ZoomAnimation.SMOOTH));
+			renderer.render(b, cRe, cIm, 300, null);
+			int[] argb = new int[96*96];
+			colors.apply(b.getIterations(), b.getPeriods(), 96, 96, 300, 1, argb);
+			int same = 0;
+			for (int i = 0; i < argb.length; i++) {
+				if (argb[i] == frames.get(n)[i]) {
+					same++;
+				}
+			}
+			assertTrue("frame " + n, same > argb.length * 98 / 100);
+		}
+	}
+
+	@Test
+	public void pngSequence() throws IOException {
+		TileRenderer renderer = new TileRenderer(2);
+		new ZoomAnimation(renderer, new ColorPass(null)).render(from, to, 3, ZoomAnimation.LINEAR, cRe, cIm, 100,
+				ZoomAnimation.pngSequence(folder.getRoot(), "zoom"));
+		for (int n = 0; n < 3; n++) {
+			BufferedImage png = ImageIO.read(new File(folder.getRoot(), "zoom0000" + n + ".png"));
+			assertEquals(96, png.getWidth());
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void failingWriterStopsTheRender() throws IOException {
+		final int[] written = new int[1];
+		try {
+			new ZoomAnimation(new TileRenderer(2), new ColorPass(null)).render(from, to, 20, ZoomAnimation.LINEAR,
+					cRe, cIm, 100, new ZoomAnimation.FrameWriter() {
+						public void write(int frame, int[] argb, int width, int height) {
+							written[0]++;
+							throw new IllegalStateException("frame " + frame);
+						}
+
+						public void close() {
+						}
+					});
+			fail("the writer's exception was lost");
+		} catch (IllegalStateException e) {
+			assertEquals("frame 0", e.getMessage());
+		}
+		assertEquals(1, written[0]);
+	}
+}
@@ -12,6 +12,9 @@
 
 package nip;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
 
 /**
  * An Image is a visual display of a picture represented as a raster of pixels in an (x,y)
@@ -112,6 +115,19 @@ public class Image extends Graphic {
 		raster.loadImage(imageFile);
 	}
 
+	/**
+	 * Writes the pixels of the raster to a file, in the format named by the
+	 * file's extension, such as png or gif.  Rotation and zoom are not applied.
+	 * @param imageFile the full path name of the file to be written
+	 * @throws IOException if the file cannot be written or the format is not known
+	 */
+	public void saveImage(String imageFile) throws IOException {
+		int dot = imageFile.lastIndexOf('.');
+		String format = dot < 0 ? "png" : imageFile.substring(dot+1).toLowerCase();
+		if (!ImageIO.write(raster, format, new File(imageFile)))
+			throw new IOException("No writer for " + format + " images");
+	}
+
 	/**
 	 * Rotates the image display about its center within its rectangular frame.
 	 * This affects only the display of the image.  It does <b>not</b> change the values of the
@@ -263,6 +279,21 @@ public class Image extends Graphic {
 		raster.setPixel(x, y, rgb);
 	}
 
+	/**
+	 * Sets a rectangular block of pixels at once from an array of integer values.
+	 * Pixel (x+i, y+j) is taken from rgb[offset + j*scansize + i].
+	 * @param x the left pixel coordinate of the block
+	 * @param y the top pixel coordinate of the block
+	 * @param width in pixels
+	 * @param height in pixels
+	 * @param rgb the desired colors, expressed as ints in the same format as {@link #setPixel(int, int, int)}
+	 * @param offset index in rgb of the upper left pixel
+	 * @param scansize distance in rgb from one row of the block to the next
+	 */
+	public void setPixels(int x, int y, int width, int height, int[] rgb, int offset, int scansize) {
+		raster.setPixels(x, y, width, height, rgb, offset, scansize);
+	}
+
 	/**
 	 * Swaps the color values of the two pixels with coordinates (x1,y1) and (x2,y2).
 	 * @param x1 x coordinate of the first pixel
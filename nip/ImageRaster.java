@@ -108,9 +108,14 @@ class ImageRaster extends BufferedImage {
 	}
 
 	public void fillRegion(int x, int y, int width, int height, int c) {
-		for (int i = 0; i < width; i++)
-			for (int j = 0; j < height; j++)
-				super.setRGB(x+i,y+j,c);
+		if (width <= 0 || height <= 0)
+			return;
+		// one row of the color, written a whole row at a time
+		int[] row = new int[width];
+		java.util.Arrays.fill(row, c);
+		WritableRaster r = getRaster();
+		for (int j = 0; j < height; j++)
+			r.setDataElements(x, y+j, width, 1, row);
 	}
 
 	public void copy(ImageRaster destination) {
@@ -135,6 +140,20 @@ class ImageRaster extends BufferedImage {
 		setRGB(x,y,rgb);
 	}
 
+	public void setPixels(int x, int y, int width, int height, int[] rgb, int offset, int scansize) {
+		// hand whole rows to the int raster instead of converting pixel by pixel
+		WritableRaster r = getRaster();
+		if (offset == 0 && scansize == width) {
+			r.setDataElements(x, y, width, height, rgb);
+			return;
+		}
+		int[] row = new int[width];
+		for (int j = 0; j < height; j++) {
+			System.arraycopy(rgb, offset + j*scansize, row, 0, width);
+			r.setDataElements(x, y+j, width, 1, row);
+		}
+	}
+
 	public void setRGB(int x, int y, int rgb) {
 		super.setRGB(x,y,rgb);
 	}